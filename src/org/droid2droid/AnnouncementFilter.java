@@ -0,0 +1,231 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.util.Arrays;
+
+/**
+ * Filter the announcements already received, before decoding them.
+ *
+ * The discovery process receive the same announcements again and again. This filter
+ * keep the fingerprint of the last announcement for each UUID, in an open addressing
+ * table with primitive arrays, and reject the unchanged repeats without any allocation.
+ * Only the new or changed announcements must be decoded to a {@link RemoteAndroidInfo}.
+ *
+ * Not thread safe. Use one filter in the discovery thread.
+ *
+ * @hide
+ */
+public final class AnnouncementFilter
+{
+	private static final long FNV_OFFSET=0xcbf29ce484222325L;
+	private static final long FNV_PRIME=0x100000001b3L;
+
+	private long[] mMsb;
+	private long[] mLsb;
+	private long[] mFingerprints;
+	private boolean[] mUsed;
+	private int mMask;
+	private int mSize;
+	private long mDropped;
+
+	/**
+	 * @param expected The expected number of devices.
+	 */
+	public AnnouncementFilter(int expected)
+	{
+		int capacity=16;
+		while (capacity<expected*2)
+			capacity<<=1;
+		allocate(capacity);
+	}
+
+	/**
+	 * Compute the fingerprint of an announcement (FNV-1a, 64 bits).
+	 * Use the bytes with the name, features, URIs and version, not the volatile fields.
+	 *
+	 * @param buf The buffer.
+	 * @param off The offset.
+	 * @param len The length.
+	 * @return The fingerprint.
+	 */
+	public static long fingerprint(byte[] buf,int off,int len)
+	{
+		long hash=FNV_OFFSET;
+		for (int i=off,end=off+len;i<end;++i)
+		{
+			hash^=buf[i] & 0xFF;
+			hash*=FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * Read a big endian long, ie. the part of an UUID.
+	 *
+	 * @param buf The buffer.
+	 * @param off The offset.
+	 * @return The value.
+	 */
+	public static long readLong(byte[] buf,int off)
+	{
+		long value=0;
+		for (int i=off;i<off+8;++i)
+			value=(value<<8)|(buf[i] & 0xFF);
+		return value;
+	}
+
+	/**
+	 * Check an announcement and remember it.
+	 *
+	 * @param msb The most significant bits of the UUID.
+	 * @param lsb The least significant bits of the UUID.
+	 * @param fingerprint The fingerprint of the announcement.
+	 * @return <code>true</code> if the device is new or changed, <code>false</code> if it's a repeat.
+	 */
+	public boolean accept(long msb,long lsb,long fingerprint)
+	{
+		int i=slot(msb,lsb);
+		while (mUsed[i])
+		{
+			if (mMsb[i]==msb && mLsb[i]==lsb)
+			{
+				if (mFingerprints[i]==fingerprint)
+				{
+					++mDropped;
+					return false;
+				}
+				mFingerprints[i]=fingerprint;
+				return true;
+			}
+			i=(i+1) & mMask;
+		}
+		mUsed[i]=true;
+		mMsb[i]=msb;
+		mLsb[i]=lsb;
+		mFingerprints[i]=fingerprint;
+		if (++mSize*2>mMask+1)
+			allocate((mMask+1)*2);
+		return true;
+	}
+
+	/**
+	 * Forget a device, ie. when it's removed from the container.
+	 * The next announcement will be accepted.
+	 *
+	 * @param msb The most significant bits of the UUID.
+	 * @param lsb The least significant bits of the UUID.
+	 */
+	public void remove(long msb,long lsb)
+	{
+		int i=slot(msb,lsb);
+		while (mUsed[i])
+		{
+			if (mMsb[i]==msb && mLsb[i]==lsb)
+			{
+				mUsed[i]=false;
+				--mSize;
+				// Backward shift the next entries of the cluster
+				int j=i;
+				for (;;)
+				{
+					j=(j+1) & mMask;
+					if (!mUsed[j])
+						return;
+					final int k=slot(mMsb[j],mLsb[j]);
+					// Move j in i if k is not in ]i,j] (cyclic)
+					if ((i<=j) ? (i<k && k<=j) : (i<k || k<=j))
+						continue;
+					mUsed[i]=true;
+					mMsb[i]=mMsb[j];
+					mLsb[i]=mLsb[j];
+					mFingerprints[i]=mFingerprints[j];
+					mUsed[j]=false;
+					i=j;
+				}
+			}
+			i=(i+1) & mMask;
+		}
+	}
+
+	/**
+	 * Forget all the devices.
+	 */
+	public void clear()
+	{
+		Arrays.fill(mUsed,false);
+		mSize=0;
+	}
+
+	/**
+	 * @return The number of devices.
+	 */
+	public int size()
+	{
+		return mSize;
+	}
+
+	/**
+	 * @return The number of repeats rejected.
+	 */
+	public long getDropped()
+	{
+		return mDropped;
+	}
+
+	private int slot(long msb,long lsb)
+	{
+		long h=msb*0x9E3779B97F4A7C15L ^ lsb;
+		h^=h>>>32;
+		h*=0x9E3779B97F4A7C15L;
+		return (int)(h>>>32) & mMask;
+	}
+
+	private void allocate(int capacity)
+	{
+		final long[] msb=mMsb;
+		final long[] lsb=mLsb;
+		final long[] fingerprints=mFingerprints;
+		final boolean[] used=mUsed;
+		mMsb=new long[capacity];
+		mLsb=new long[capacity];
+		mFingerprints=new long[capacity];
+		mUsed=new boolean[capacity];
+		mMask=capacity-1;
+		if (used==null)
+			return;
+		for (int j=0;j<used.length;++j)
+		{
+			if (!used[j])
+				continue;
+			int i=slot(msb[j],lsb[j]);
+			while (mUsed[i])
+				i=(i+1) & mMask;
+			mUsed[i]=true;
+			mMsb[i]=msb[j];
+			mLsb[i]=lsb[j];
+			mFingerprints[i]=fingerprints[j];
+		}
+	}
+}
@@ -0,0 +1,390 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.util.UUID;
+
+/**
+ * Compact format of the discovery announcements.
+ *
+ * <pre>
+ * byte     MAGIC | VERSION
+ * long     uuid (msb)
+ * long     uuid (lsb)
+ * varint   version of the device
+ * string   os
+ * string   name
+ * varint   features (the bits of RemoteAndroidInfo.FEATURE_*)
+ * byte[8]  fingerprint of the public key
+ * varint   number of URIs
+ *   varint   length of the prefix shared with the previous URI
+ *   string   the rest of the URI
+ * </pre>
+ * The strings are a varint length and the UTF-8 bytes. The varints are unsigned LEB128,
+ * so the small features and versions use one or two bytes: the varint of the features is
+ * the bit field, 7 bits per byte, and the current features fit in two bytes. The public key is replaced
+ * with its fingerprint ({@link ConnectPayload#fingerprint(PublicKey)}); the full key is
+ * fetched on demand, during the connection, and checked with {@link Beacon#matches(PublicKey)}.
+ *
+ * The uuid has a fixed position, so {@link #accept(AnnouncementFilter, byte[], int, int)}
+ * reject the repeats before any decoding.
+ *
+ * @hide
+ */
+public final class BeaconCodec
+{
+	/** The current version of the format. */
+	public static final int VERSION=1;
+
+	private static final int MAGIC=0xD0;
+	private static final int HEADER=1+16;
+	private static final String UTF8="UTF-8";
+
+	/**
+	 * A decoded announcement.
+	 */
+	public static final class Beacon
+	{
+		private final UUID mUuid;
+		private final int mVersion;
+		private final String mOs;
+		private final String mName;
+		private final long mFeatures;
+		private final byte[] mFingerprint;
+		private final String[] mUris;
+
+		Beacon(UUID uuid,int version,String os,String name,long features,byte[] fingerprint,String[] uris)
+		{
+			mUuid=uuid;
+			mVersion=version;
+			mOs=os;
+			mName=name;
+			mFeatures=features;
+			mFingerprint=fingerprint;
+			mUris=uris;
+		}
+
+		/** @see RemoteAndroidInfo#getUuid() */
+		public UUID getUuid()
+		{
+			return mUuid;
+		}
+
+		/** @see RemoteAndroidInfo#getVersion() */
+		public int getVersion()
+		{
+			return mVersion;
+		}
+
+		/** @see RemoteAndroidInfo#getOs() */
+		public String getOs()
+		{
+			return mOs;
+		}
+
+		/** @see RemoteAndroidInfo#getName() */
+		public String getName()
+		{
+			return mName;
+		}
+
+		/** @see RemoteAndroidInfo#getFeature() */
+		public long getFeature()
+		{
+			return mFeatures;
+		}
+
+		/** @see RemoteAndroidInfo#getUris() */
+		public String[] getUris()
+		{
+			return mUris.clone();
+		}
+
+		/** The fingerprint of the public key. */
+		public byte[] getFingerprint()
+		{
+			return mFingerprint.clone();
+		}
+
+		/**
+		 * Check the public key fetched from the device.
+		 *
+		 * @param key The public key.
+		 * @return <code>true</code> if the key match the fingerprint.
+		 */
+		public boolean matches(PublicKey key)
+		{
+			return MessageDigest.isEqual(mFingerprint,ConnectPayload.fingerprint(key));
+		}
+
+		@Override
+		public String toString()
+		{
+			return mUuid+" "+mName;
+		}
+	}
+
+	private BeaconCodec()
+	{
+	}
+
+	/**
+	 * Encode the informations of a device.
+	 *
+	 * @param info The informations.
+	 * @return The announcement.
+	 */
+	public static byte[] encode(RemoteAndroidInfo info)
+	{
+		return encode(info.getUuid(),info.getVersion(),info.getOs(),info.getName(),info.getFeature(),
+			ConnectPayload.fingerprint(info.getPublicKey()),info.getUris());
+	}
+
+	/**
+	 * Encode an announcement.
+	 *
+	 * @param uuid The uuid.
+	 * @param version The version.
+	 * @param os The OS.
+	 * @param name The name.
+	 * @param features The features.
+	 * @param fingerprint The fingerprint of the public key ({@link ConnectPayload#FINGERPRINT_SIZE} bytes).
+	 * @param uris The URIs. Sort them to share more prefixes.
+	 * @return The announcement.
+	 */
+	public static byte[] encode(UUID uuid,int version,String os,String name,long features,byte[] fingerprint,String[] uris)
+	{
+		if (fingerprint.length!=ConnectPayload.FINGERPRINT_SIZE)
+			throw new IllegalArgumentException("fingerprint");
+		final ByteArrayOutputStream out=new ByteArrayOutputStream(64);
+		out.write(MAGIC|VERSION);
+		writeLong(out,uuid.getMostSignificantBits());
+		writeLong(out,uuid.getLeastSignificantBits());
+		writeVarint(out,version & 0xFFFFFFFFL);
+		writeString(out,os);
+		writeString(out,name);
+		writeVarint(out,features);
+		out.write(fingerprint,0,fingerprint.length);
+		writeVarint(out,uris.length);
+		String previous="";
+		for (String uri:uris)
+		{
+			final int prefix=sharedPrefix(previous,uri);
+			writeVarint(out,prefix);
+			writeString(out,uri.substring(prefix));
+			previous=uri;
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Check an announcement with a filter, without decoding it.
+	 *
+	 * @param filter The filter.
+	 * @param buf The buffer.
+	 * @param off The offset.
+	 * @param len The length.
+	 * @return <code>true</code> if the announcement must be decoded (new or changed device).
+	 */
+	public static boolean accept(AnnouncementFilter filter,byte[] buf,int off,int len)
+	{
+		if (len<HEADER || buf[off]!=(byte)(MAGIC|VERSION))
+			return true; // Let decode() report the error
+		return filter.accept(AnnouncementFilter.readLong(buf,off+1),AnnouncementFilter.readLong(buf,off+9),
+			AnnouncementFilter.fingerprint(buf,off+HEADER,len-HEADER));
+	}
+
+	/**
+	 * Decode an announcement.
+	 *
+	 * @param buf The buffer.
+	 * @param off The offset.
+	 * @param len The length.
+	 * @return The beacon.
+	 * @throws IllegalArgumentException If the format or the version is not valid.
+	 */
+	public static Beacon decode(byte[] buf,int off,int len)
+	{
+		final Reader in=new Reader(buf,off,len);
+		final int header=in.readByte();
+		if ((header & 0xF0)!=MAGIC)
+			throw new IllegalArgumentException("Not a beacon");
+		if ((header & 0x0F)!=VERSION)
+			throw new IllegalArgumentException("Unknown version "+(header & 0x0F));
+		final UUID uuid=new UUID(in.readLong(),in.readLong());
+		final long version=in.readVarint();
+		if (version>0xFFFFFFFFL)
+			throw new IllegalArgumentException("Invalid version");
+		final String os=in.readString();
+		final String name=in.readString();
+		final long features=in.readVarint();
+		final byte[] fingerprint=in.readBytes(ConnectPayload.FINGERPRINT_SIZE);
+		final long count=in.readVarint();
+		// Each URI use at least two bytes
+		if (count>in.remaining()/2)
+			throw new IllegalArgumentException("Invalid count");
+		final String[] uris=new String[(int)count];
+		String previous="";
+		for (int i=0;i<uris.length;++i)
+		{
+			final long prefix=in.readVarint();
+			if (prefix>previous.length())
+				throw new IllegalArgumentException("Invalid prefix");
+			previous=previous.substring(0,(int)prefix)+in.readString();
+			uris[i]=previous;
+		}
+		if (in.remaining()!=0)
+			throw new IllegalArgumentException("Trailing bytes");
+		return new Beacon(uuid,(int)version,os,name,features,fingerprint,uris);
+	}
+
+	private static int sharedPrefix(String a,String b)
+	{
+		final int max=Math.min(a.length(),b.length());
+		int i=0;
+		while (i<max && a.charAt(i)==b.charAt(i))
+			++i;
+		// Never split a surrogate pair
+		if (i>0 && Character.isHighSurrogate(b.charAt(i-1)))
+			--i;
+		return i;
+	}
+
+	private static void writeLong(ByteArrayOutputStream out,long value)
+	{
+		for (int shift=56;shift>=0;shift-=8)
+			out.write((int)(value>>>shift));
+	}
+
+	private static void writeVarint(ByteArrayOutputStream out,long value)
+	{
+		while ((value & ~0x7FL)!=0)
+		{
+			out.write((int)(value & 0x7F) | 0x80);
+			value>>>=7;
+		}
+		out.write((int)value);
+	}
+
+	private static void writeString(ByteArrayOutputStream out,String value)
+	{
+		try
+		{
+			final byte[] bytes=value.getBytes(UTF8);
+			writeVarint(out,bytes.length);
+			out.write(bytes,0,bytes.length);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new Error("Internal error",e);
+		}
+	}
+
+	// Bounded reader, without allocation for the numbers
+	private static final class Reader
+	{
+		private final byte[] mBuf;
+		private int mPos;
+		private final int mEnd;
+
+		Reader(byte[] buf,int off,int len)
+		{
+			if (off<0 || len<0 || off+len>buf.length)
+				throw new IllegalArgumentException("Invalid bounds");
+			mBuf=buf;
+			mPos=off;
+			mEnd=off+len;
+		}
+
+		int remaining()
+		{
+			return mEnd-mPos;
+		}
+
+		private void require(long n)
+		{
+			if (n>mEnd-mPos)
+				throw new IllegalArgumentException("Truncated beacon");
+		}
+
+		int readByte()
+		{
+			require(1);
+			return mBuf[mPos++] & 0xFF;
+		}
+
+		long readLong()
+		{
+			require(8);
+			final long value=AnnouncementFilter.readLong(mBuf,mPos);
+			mPos+=8;
+			return value;
+		}
+
+		long readVarint()
+		{
+			long value=0;
+			for (int shift=0;shift<64;shift+=7)
+			{
+				final int b=readByte();
+				// The 10th byte hold only the bit 63
+				if (shift==63 && (b & 0xFE)!=0)
+					throw new IllegalArgumentException("Varint overflow");
+				value|=(long)(b & 0x7F)<<shift;
+				if ((b & 0x80)==0)
+					return value;
+			}
+			throw new IllegalArgumentException("Invalid varint");
+		}
+
+		byte[] readBytes(int n)
+		{
+			require(n);
+			final byte[] bytes=new byte[n];
+			System.arraycopy(mBuf,mPos,bytes,0,n);
+			mPos+=n;
+			return bytes;
+		}
+
+		String readString()
+		{
+			final long n=readVarint();
+			require(n);
+			try
+			{
+				final String value=new String(mBuf,mPos,(int)n,UTF8);
+				mPos+=(int)n;
+				return value;
+			}
+			catch (UnsupportedEncodingException e)
+			{
+				throw new Error("Internal error",e);
+			}
+		}
+	}
+}
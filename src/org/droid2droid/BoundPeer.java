@@ -0,0 +1,208 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import android.content.ComponentName;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.net.Uri;
+import android.os.IBinder;
+
+/**
+ * A remote service binded in a remote Android&#8482;.
+ *
+ * Bind the remote Android&#8482; with the best URI, then the remote service.
+ *
+ * @hide
+ */
+/*package*/ final class BoundPeer implements ServiceConnection
+{
+	final RemoteAndroidInfo mInfo;
+	private final Intent mService;
+	private final int mFlags;
+	private final long mTimeout;
+	private final CountDownLatch mReady=new CountDownLatch(1);
+	private volatile RemoteAndroid mRemote;
+	private volatile IBinder mBinder;
+	private volatile Throwable mError;
+	private volatile boolean mClosed;
+	// The binding is requested, the remote Android may be not connected yet
+	private boolean mBindRequested;
+
+	private final ServiceConnection mServiceConnection=new ServiceConnection()
+	{
+		@Override
+		public void onServiceConnected(ComponentName name, IBinder service)
+		{
+			mBinder=service;
+			mReady.countDown();
+		}
+
+		@Override
+		public void onServiceDisconnected(ComponentName name)
+		{
+			mBinder=null;
+		}
+	};
+
+	BoundPeer(RemoteAndroidInfo info,Intent service,int flags,long timeout)
+	{
+		mInfo=info;
+		mService=service;
+		mFlags=flags;
+		mTimeout=timeout;
+	}
+
+	/**
+	 * Start the binding process, only once.
+	 *
+	 * @param manager The manager.
+	 * @return <code>false</code> if the process can not start.
+	 */
+	boolean bind(Droid2DroidManager manager)
+	{
+		synchronized (this)
+		{
+			if (mClosed)
+				return false;
+			if (mBindRequested)
+				return true;
+			mBindRequested=true;
+		}
+		final String[] uris=mInfo.getUris();
+		if (uris==null || uris.length==0)
+		{
+			bindFailed(new IllegalStateException("No uri"));
+			return false;
+		}
+		if (!manager.bindRemoteAndroid(
+				new Intent(Droid2DroidManager.ACTION_BIND_REMOTE_ANDROID,Uri.parse(uris[0])),this,0))
+		{
+			bindFailed(new IllegalStateException("Can't bind"));
+			return false;
+		}
+		return true;
+	}
+
+	private void bindFailed(Throwable e)
+	{
+		synchronized (this)
+		{
+			mBindRequested=false;
+		}
+		fail(e);
+	}
+
+	/**
+	 * Wait the end of the binding process.
+	 *
+	 * @param timeout The timeout in milliseconds.
+	 * @return <code>true</code> if the remote service is binded.
+	 * @throws InterruptedException If the thread is interrupted.
+	 */
+	boolean await(long timeout) throws InterruptedException
+	{
+		mReady.await(timeout,TimeUnit.MILLISECONDS);
+		return mBinder!=null;
+	}
+
+	IBinder getBinder()
+	{
+		return mBinder;
+	}
+
+	Throwable getError()
+	{
+		return mError;
+	}
+
+	/**
+	 * @return <code>true</code> if the remote service is binded and the connection is open.
+	 */
+	boolean isAlive()
+	{
+		final RemoteAndroid remote=mRemote;
+		return !mClosed && mBinder!=null && remote!=null && !remote.isClosed();
+	}
+
+	/**
+	 * @return <code>true</code> if the binding process is finished, and the remote service is not
+	 * 	available anymore (closed, failed or disconnected).
+	 */
+	boolean isLost()
+	{
+		return mClosed || mError!=null || (mReady.getCount()==0 && !isAlive());
+	}
+
+	// The remote Android is connected
+	@Override
+	public void onServiceConnected(ComponentName name, IBinder service)
+	{
+		final RemoteAndroid remote=(RemoteAndroid)service;
+		if (mClosed)
+		{
+			remote.close();
+			return;
+		}
+		final RemoteAndroid previous=mRemote;
+		if (previous!=null && previous!=remote)
+			previous.close();
+		mRemote=remote;
+		remote.setExecuteTimeout(mTimeout);
+		if (!remote.bindService(mService,mServiceConnection,mFlags))
+			fail(new IllegalStateException("Service not found"));
+	}
+
+	@Override
+	public void onServiceDisconnected(ComponentName name)
+	{
+		mRemote=null;
+		mBinder=null;
+	}
+
+	void fail(Throwable e)
+	{
+		mError=e;
+		mReady.countDown();
+	}
+
+	/**
+	 * Unbind the remote service and close the connection.
+	 */
+	void close()
+	{
+		mClosed=true;
+		final RemoteAndroid remote=mRemote;
+		if (remote==null)
+			return;
+		if (mBinder!=null)
+			remote.unbindService(mServiceConnection);
+		remote.close();
+		mRemote=null;
+		mBinder=null;
+	}
+}
@@ -0,0 +1,395 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.droid2droid.Droid2DroidManager.ManagerListener;
+import org.droid2droid.ListRemoteAndroidInfo.DiscoverListener;
+import org.droid2droid.RemoteAndroid.PublishListener;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Dispatch the callbacks of the listeners in an {@link Executor}.
+ *
+ * The callbacks of one listener are always invoked in order, one at a time,
+ * even with a pool of threads. With {@link #DIRECT}, the callbacks are invoked
+ * in the thread of the framework, without any hop.
+ * <pre>
+ * list.setListener(listener, CallbackExecutors.DIRECT);
+ * Droid2DroidManager.bindManager(context, listener, executor);
+ * </pre>
+ *
+ * @since 1.1
+ */
+public final class CallbackExecutors
+{
+	/**
+	 * Invoke the callbacks in the thread which deliver them, without any hop.
+	 * It's the UI thread for the {@link Droid2DroidManager.ManagerListener}, and for the
+	 * implementations which don't dispatch themselves in the executor.
+	 * The callbacks must be fast and must never block.
+	 *
+	 * @since 1.1
+	 */
+	public static final Executor DIRECT=new Executor()
+	{
+		@Override
+		public void execute(Runnable command)
+		{
+			command.run();
+		}
+	};
+
+	private static Executor sMainThread;
+
+	private CallbackExecutors()
+	{
+	}
+
+	/**
+	 * Return an executor to invoke the callbacks in the UI thread.
+	 *
+	 * @return The executor.
+	 * @since 1.1
+	 */
+	public static synchronized Executor mainThread()
+	{
+		if (sMainThread==null)
+		{
+			final Handler handler=new Handler(Looper.getMainLooper());
+			sMainThread=new Executor()
+			{
+				@Override
+				public void execute(Runnable command)
+				{
+					handler.post(command);
+				}
+			};
+		}
+		return sMainThread;
+	}
+
+	/**
+	 * Wrap a discover listener to invoke it in an executor.
+	 *
+	 * @param listener The listener. May be <code>null</code>.
+	 * @param executor The executor.
+	 * @return The wrapped listener.
+	 * @since 1.1
+	 */
+	public static DiscoverListener wrap(final DiscoverListener listener,Executor executor)
+	{
+		if (listener==null || executor==DIRECT)
+			return listener;
+		final Executor serial=new SerialExecutor(executor);
+		return new DiscoverListener()
+		{
+			@Override
+			public void onDiscoverStart()
+			{
+				serial.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						listener.onDiscoverStart();
+					}
+				});
+			}
+
+			@Override
+			public void onDiscoverStop()
+			{
+				serial.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						listener.onDiscoverStop();
+					}
+				});
+			}
+
+			@Override
+			public void onDiscover(final RemoteAndroidInfo remoteAndroidInfo,final boolean update)
+			{
+				serial.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						listener.onDiscover(remoteAndroidInfo,update);
+					}
+				});
+			}
+		};
+	}
+
+	/**
+	 * Wrap a manager listener to invoke it in an executor.
+	 *
+	 * @param listener The listener.
+	 * @param executor The executor.
+	 * @return The wrapped listener.
+	 * @since 1.1
+	 */
+	public static ManagerListener wrap(final ManagerListener listener,Executor executor)
+	{
+		if (listener==null || executor==DIRECT)
+			return listener;
+		final Executor serial=new SerialExecutor(executor);
+		return new ManagerListener()
+		{
+			@Override
+			public void bind(final Droid2DroidManager manager)
+			{
+				serial.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						listener.bind(manager);
+					}
+				});
+			}
+
+			@Override
+			public void unbind(final Droid2DroidManager manager)
+			{
+				serial.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						listener.unbind(manager);
+					}
+				});
+			}
+		};
+	}
+
+	/**
+	 * Wrap a publish listener to invoke it in an executor.
+	 *
+	 * {@link PublishListener#askIsPushApk()} must return an answer, so the thread of
+	 * the framework wait the answer from the executor. In the UI thread, which must never
+	 * wait, the question is invoked directly. The executor must not run its commands in the
+	 * thread which ask the question (ie. a {@link Handler} of the same looper): this thread
+	 * would wait forever.
+	 *
+	 * @param listener The listener. May be <code>null</code>.
+	 * @param executor The executor.
+	 * @return The wrapped listener.
+	 * @since 1.1
+	 */
+	public static PublishListener wrap(final PublishListener listener,final Executor executor)
+	{
+		if (listener==null || executor==DIRECT)
+			return listener;
+		final SerialExecutor serial=new SerialExecutor(executor);
+		return new PublishListener()
+		{
+			@Override
+			public boolean askIsPushApk()
+			{
+				// The UI thread must never wait
+				if (Looper.myLooper()==Looper.getMainLooper())
+					return listener.askIsPushApk();
+				final FutureTask<Boolean> task=new FutureTask<Boolean>(new Callable<Boolean>()
+				{
+					@Override
+					public Boolean call() throws Exception
+					{
+						return listener.askIsPushApk();
+					}
+				});
+				serial.execute(task);
+				try
+				{
+					return task.get();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					return false;
+				}
+				catch (ExecutionException e)
+				{
+					final Throwable cause=e.getCause();
+					if (cause instanceof RuntimeException)
+						throw (RuntimeException)cause;
+					if (cause instanceof Error)
+						throw (Error)cause;
+					throw new IllegalStateException(cause);
+				}
+			}
+
+			@Override
+			public void onProgress(final int progress)
+			{
+				serial.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						listener.onProgress(progress);
+					}
+				});
+			}
+
+			@Override
+			public void onError(final Throwable e)
+			{
+				serial.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						listener.onError(e);
+					}
+				});
+			}
+
+			@Override
+			public void onFinish(final int status)
+			{
+				serial.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						listener.onFinish(status);
+					}
+				});
+			}
+		};
+	}
+
+	// Run the commands in order, one at a time, in the threads of the executor
+	private static final class SerialExecutor implements Executor
+	{
+		private final Executor mExecutor;
+		private final LinkedList<Runnable> mQueue=new LinkedList<Runnable>();
+		private boolean mRunning;
+		private final Runnable mDrain=new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				drain();
+			}
+		};
+
+		SerialExecutor(Executor executor)
+		{
+			mExecutor=executor;
+		}
+
+		@Override
+		public void execute(Runnable command)
+		{
+			synchronized (this)
+			{
+				mQueue.add(command);
+				if (mRunning)
+					return;
+				mRunning=true;
+			}
+			try
+			{
+				mExecutor.execute(mDrain);
+			}
+			catch (RuntimeException e)
+			{
+				// Rejected: the next command will try again
+				synchronized (this)
+				{
+					mQueue.remove(command);
+					mRunning=false;
+				}
+				throw e;
+			}
+		}
+
+		private void drain()
+		{
+			boolean empty=false;
+			try
+			{
+				for (;;)
+				{
+					final Runnable command;
+					synchronized (this)
+					{
+						if (mQueue.isEmpty())
+						{
+							mRunning=false;
+							empty=true;
+							return;
+						}
+						command=mQueue.removeFirst();
+					}
+					command.run();
+				}
+			}
+			finally
+			{
+				// A command has thrown: keep the next callbacks
+				if (!empty)
+					resume();
+			}
+		}
+
+		private void resume()
+		{
+			synchronized (this)
+			{
+				if (mQueue.isEmpty())
+				{
+					mRunning=false;
+					return;
+				}
+			}
+			try
+			{
+				mExecutor.execute(mDrain);
+			}
+			catch (RuntimeException e)
+			{
+				// Rejected: the commands wait the next execute()
+				synchronized (this)
+				{
+					mRunning=false;
+				}
+			}
+		}
+	}
+}
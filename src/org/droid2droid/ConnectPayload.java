@@ -0,0 +1,419 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.UUID;
+
+import android.annotation.TargetApi;
+import android.content.Intent;
+import android.net.Uri;
+import android.nfc.NdefMessage;
+import android.nfc.NdefRecord;
+
+/**
+ * All the informations to connect to a remote Android&#8482; without discovery.
+ *
+ * This payload is published with NFC ({@link Droid2DroidManager#createNdefMessage()})
+ * and QRCode ({@link Droid2DroidManager#QRCODE_URI}). The receiver bind directly
+ * the remote Android&#8482; with {@link Droid2DroidManager#bindRemoteAndroid(ConnectPayload, android.content.ServiceConnection, int)}.
+ *
+ * @since 1.1
+ */
+public final class ConnectPayload
+{
+	/** Mime type of the NDEF record.
+	 * @since 1.1
+	 */
+	public static final String MIME_TYPE="application/vnd.org.droid2droid.connect";
+
+	/** Scheme of the QRCode URI.
+	 * @since 1.1
+	 */
+	public static final String SCHEME="droid2droid";
+
+	/** The size of the public key fingerprint.
+	 * @since 1.1
+	 */
+	public static final int FINGERPRINT_SIZE=8;
+
+	private static final int VERSION=1;
+	private static final int MAX_COUNT=0xFF;
+	private static final int MAX_LENGTH=0xFFFF;
+	private static final String QR_PREFIX=SCHEME+"://connect?p=";
+	// Base64 with the URL and filename safe alphabet (RFC 4648), without padding
+	private static final char[] BASE64URL="ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+	private final UUID mUuid;
+	private final String[] mUris;
+	private final byte[] mFingerprint;
+	private final byte[] mTicket;
+
+	/**
+	 * @param uuid The uuid of the device.
+	 * @param uris The connection URIs, the best first.
+	 * @param fingerprint The fingerprint of the public key.
+	 * @param ticket The session ticket to resume the authentication. May be <code>null</code>.
+	 * @throws IllegalArgumentException If the uuid, the URIs or the fingerprint are <code>null</code>,
+	 * 	or if a field is too long for the format (255 URIs, 255 bytes of fingerprint, 65535 bytes of ticket or of URI).
+	 *
+	 * @since 1.1
+	 */
+	public ConnectPayload(UUID uuid,String[] uris,byte[] fingerprint,byte[] ticket)
+	{
+		if (uuid==null)
+			throw new IllegalArgumentException("uuid");
+		if (uris==null || uris.length==0 || uris.length>MAX_COUNT)
+			throw new IllegalArgumentException("uris");
+		for (String uri:uris)
+		{
+			if (uri==null || utfLength(uri)>MAX_LENGTH)
+				throw new IllegalArgumentException("uri");
+		}
+		if (fingerprint==null || fingerprint.length>MAX_COUNT)
+			throw new IllegalArgumentException("fingerprint");
+		if (ticket!=null && ticket.length>MAX_LENGTH)
+			throw new IllegalArgumentException("ticket");
+		mUuid=uuid;
+		mUris=uris.clone();
+		mFingerprint=fingerprint.clone();
+		mTicket=(ticket==null) ? new byte[0] : ticket.clone();
+	}
+
+	/**
+	 * Create a payload from the informations of a device.
+	 *
+	 * @param info The informations.
+	 * @param ticket The session ticket. May be <code>null</code>.
+	 * @return The payload.
+	 *
+	 * @since 1.1
+	 */
+	public static ConnectPayload create(RemoteAndroidInfo info,byte[] ticket)
+	{
+		return new ConnectPayload(info.getUuid(),info.getUris(),fingerprint(info.getPublicKey()),ticket);
+	}
+
+	/**
+	 * Return the short fingerprint of a public key.
+	 *
+	 * @param key The key.
+	 * @return The first {@link #FINGERPRINT_SIZE} bytes of the SHA-256 of the encoded key.
+	 *
+	 * @since 1.1
+	 */
+	public static byte[] fingerprint(PublicKey key)
+	{
+		try
+		{
+			final byte[] fingerprint=new byte[FINGERPRINT_SIZE];
+			System.arraycopy(MessageDigest.getInstance("SHA-256").digest(key.getEncoded()),0,fingerprint,0,FINGERPRINT_SIZE);
+			return fingerprint;
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new Error("Internal error",e);
+		}
+	}
+
+	/** The uuid of the device.
+	 * @since 1.1
+	 */
+	public UUID getUuid()
+	{
+		return mUuid;
+	}
+
+	/** The connection URIs, the best first.
+	 * @since 1.1
+	 */
+	public String[] getUris()
+	{
+		return mUris.clone();
+	}
+
+	/** The fingerprint of the public key.
+	 * @since 1.1
+	 */
+	public byte[] getFingerprint()
+	{
+		return mFingerprint.clone();
+	}
+
+	/** The session ticket. Empty if no ticket.
+	 * @since 1.1
+	 */
+	public byte[] getTicket()
+	{
+		return mTicket.clone();
+	}
+
+	/**
+	 * Check the fingerprint with the public key received during the connection.
+	 *
+	 * @param key The public key.
+	 * @return <code>true</code> if the key match.
+	 *
+	 * @since 1.1
+	 */
+	public boolean matches(PublicKey key)
+	{
+		return MessageDigest.isEqual(mFingerprint,fingerprint(key));
+	}
+
+	/**
+	 * Return the intent for {@link Droid2DroidManager#bindRemoteAndroid(Intent, android.content.ServiceConnection, int)}.
+	 *
+	 * @return The intent with the best URI and the payload in {@link Droid2DroidManager#EXTRA_CONNECT_PAYLOAD}.
+	 *
+	 * @since 1.1
+	 */
+	public Intent toIntent()
+	{
+		return toIntent(mUris[0]);
+	}
+
+	/*package*/ Intent toIntent(String uri)
+	{
+		return new Intent(Droid2DroidManager.ACTION_BIND_REMOTE_ANDROID,Uri.parse(uri))
+			.putExtra(Droid2DroidManager.EXTRA_CONNECT_PAYLOAD,toBytes());
+	}
+
+	/**
+	 * Serialize the payload.
+	 *
+	 * @return The bytes.
+	 *
+	 * @since 1.1
+	 */
+	public byte[] toBytes()
+	{
+		try
+		{
+			final ByteArrayOutputStream bytes=new ByteArrayOutputStream(128);
+			final DataOutputStream out=new DataOutputStream(bytes);
+			out.writeByte(VERSION);
+			out.writeLong(mUuid.getMostSignificantBits());
+			out.writeLong(mUuid.getLeastSignificantBits());
+			out.writeByte(mFingerprint.length);
+			out.write(mFingerprint);
+			out.writeShort(mTicket.length);
+			out.write(mTicket);
+			out.writeByte(mUris.length);
+			for (String uri:mUris)
+				out.writeUTF(uri);
+			out.close();
+			return bytes.toByteArray();
+		}
+		catch (IOException e)
+		{
+			throw new Error("Internal error",e);
+		}
+	}
+
+	/**
+	 * Parse a payload.
+	 *
+	 * @param payload The bytes.
+	 * @return The payload.
+	 * @throws IllegalArgumentException If the format is not valid.
+	 *
+	 * @since 1.1
+	 */
+	public static ConnectPayload fromBytes(byte[] payload)
+	{
+		try
+		{
+			final DataInputStream in=new DataInputStream(new ByteArrayInputStream(payload));
+			final int version=in.readUnsignedByte();
+			if (version!=VERSION)
+				throw new IllegalArgumentException("Unknown version "+version);
+			final UUID uuid=new UUID(in.readLong(),in.readLong());
+			final byte[] fingerprint=new byte[in.readUnsignedByte()];
+			in.readFully(fingerprint);
+			final byte[] ticket=new byte[in.readUnsignedShort()];
+			in.readFully(ticket);
+			final String[] uris=new String[in.readUnsignedByte()];
+			for (int i=0;i<uris.length;++i)
+				uris[i]=in.readUTF();
+			if (in.available()!=0)
+				throw new IllegalArgumentException("Trailing bytes");
+			return new ConnectPayload(uuid,uris,fingerprint,ticket);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalArgumentException("Invalid payload",e);
+		}
+	}
+
+	/**
+	 * Create the NDEF record.
+	 *
+	 * @return The record.
+	 *
+	 * @since 1.1
+	 */
+	@TargetApi(9)
+	public NdefRecord toNdefRecord()
+	{
+		return new NdefRecord(NdefRecord.TNF_MIME_MEDIA,MIME_TYPE.getBytes(),new byte[0],toBytes());
+	}
+
+	/**
+	 * Extract the payload from a NDEF message.
+	 *
+	 * @param message The message received with NFC.
+	 * @return The payload or <code>null</code> if the message has no payload.
+	 *
+	 * @since 1.1
+	 */
+	@TargetApi(9)
+	public static ConnectPayload fromNdefMessage(NdefMessage message)
+	{
+		final byte[] type=MIME_TYPE.getBytes();
+		for (NdefRecord record:message.getRecords())
+		{
+			if (record.getTnf()==NdefRecord.TNF_MIME_MEDIA && Arrays.equals(type,record.getType()))
+				return fromBytes(record.getPayload());
+		}
+		return null;
+	}
+
+	/**
+	 * Return the URI to publish in a QRCode.
+	 * The payload is encoded in base64url, without padding.
+	 *
+	 * @return The URI.
+	 *
+	 * @since 1.1
+	 */
+	public String toQRCodeUri()
+	{
+		final byte[] bytes=toBytes();
+		final StringBuilder builder=new StringBuilder(QR_PREFIX.length()+(bytes.length*4+2)/3).append(QR_PREFIX);
+		for (int i=0;i<bytes.length;i+=3)
+		{
+			final int remaining=Math.min(3,bytes.length-i);
+			int block=(bytes[i] & 0xFF)<<16;
+			if (remaining>1)
+				block|=(bytes[i+1] & 0xFF)<<8;
+			if (remaining>2)
+				block|=bytes[i+2] & 0xFF;
+			for (int j=0;j<=remaining;++j)
+				builder.append(BASE64URL[(block>>(18-j*6)) & 0x3F]);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Parse the URI of a QRCode.
+	 *
+	 * @param uri The URI.
+	 * @return The payload or <code>null</code> if it's not a droid2droid URI.
+	 *
+	 * @since 1.1
+	 */
+	public static ConnectPayload fromQRCodeUri(String uri)
+	{
+		if (uri==null || !uri.regionMatches(true,0,QR_PREFIX,0,QR_PREFIX.length()))
+			return null;
+		final int len=uri.length()-QR_PREFIX.length();
+		if ((len & 3)==1)
+			throw new IllegalArgumentException("Invalid payload");
+		final byte[] bytes=new byte[len*3/4];
+		int block=0;
+		int pos=0;
+		for (int i=0;i<len;++i)
+		{
+			block=(block<<6)|base64url(uri.charAt(QR_PREFIX.length()+i));
+			if ((i & 3)==3)
+			{
+				bytes[pos++]=(byte)(block>>16);
+				bytes[pos++]=(byte)(block>>8);
+				bytes[pos++]=(byte)block;
+				block=0;
+			}
+		}
+		// The last partial block
+		switch (len & 3)
+		{
+			case 2 :
+				bytes[pos]=(byte)(block>>4);
+				break;
+			case 3 :
+				bytes[pos++]=(byte)(block>>10);
+				bytes[pos]=(byte)(block>>2);
+				break;
+			default:
+				break;
+		}
+		return fromBytes(bytes);
+	}
+
+	@Override
+	public String toString()
+	{
+		return mUuid+" "+Arrays.toString(mUris);
+	}
+
+	private static int base64url(char c)
+	{
+		if (c>='A' && c<='Z')
+			return c-'A';
+		if (c>='a' && c<='z')
+			return c-'a'+26;
+		if (c>='0' && c<='9')
+			return c-'0'+52;
+		if (c=='-')
+			return 62;
+		if (c=='_')
+			return 63;
+		throw new IllegalArgumentException("Invalid payload");
+	}
+
+	// The length of the modified UTF-8 of DataOutput.writeUTF()
+	private static int utfLength(String value)
+	{
+		int length=0;
+		for (int i=0;i<value.length();++i)
+		{
+			final char c=value.charAt(i);
+			if (c>=0x0001 && c<=0x007F)
+				length+=1;
+			else if (c>0x07FF)
+				length+=3;
+			else
+				length+=2;
+		}
+		return length;
+	}
+}
@@ -0,0 +1,470 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.droid2droid.ListRemoteAndroidInfo.DiscoverListener;
+
+/**
+ * A publisher of discovery events with flow control.
+ *
+ * Each subscriber request the number of events it can handle. The events are
+ * buffered for each subscriber, up to a capacity, and the overflow strategy
+ * select the events to drop. A slow subscriber never block the discovery process.
+ * The contract is the same as <code>java.util.concurrent.Flow</code>, not available
+ * in all Android&#8482; versions.
+ *
+ * @see {@link Droid2DroidManager#newDiscoveredPublisher(android.content.Context, Overflow, int, Executor)}
+ *
+ * @since 1.1
+ */
+public final class DiscoverPublisher implements DiscoverListener
+{
+	/**
+	 * The strategy when the buffer of a subscriber is full.
+	 *
+	 * @since 1.1
+	 */
+	public enum Overflow
+	{
+		/** Drop the oldest event. */
+		DROP_OLDEST,
+		/** Keep only the last event for each device, then drop the oldest event. */
+		COALESCE_PER_UUID,
+		/** Keep only the last event. */
+		LATEST_ONLY
+	}
+
+	/**
+	 * A discovery event.
+	 *
+	 * @since 1.1
+	 */
+	public static final class DiscoverEvent
+	{
+		/** The discovery process start. */
+		public static final int TYPE_START=0;
+		/** The discovery process stop. */
+		public static final int TYPE_STOP=1;
+		/** A device is discovered or updated. */
+		public static final int TYPE_DISCOVER=2;
+
+		private final int mType;
+		private final RemoteAndroidInfo mInfo;
+		private final boolean mUpdate;
+
+		/*package*/ DiscoverEvent(int type,RemoteAndroidInfo info,boolean update)
+		{
+			mType=type;
+			mInfo=info;
+			mUpdate=update;
+		}
+
+		/**
+		 * @return {@link #TYPE_START}, {@link #TYPE_STOP} or {@link #TYPE_DISCOVER}.
+		 * @since 1.1
+		 */
+		public int getType()
+		{
+			return mType;
+		}
+
+		/**
+		 * @return The device for {@link #TYPE_DISCOVER}, else <code>null</code>.
+		 * @since 1.1
+		 */
+		public RemoteAndroidInfo getInfo()
+		{
+			return mInfo;
+		}
+
+		/**
+		 * @return <code>true</code> if the device is updated.
+		 * @since 1.1
+		 */
+		public boolean isUpdate()
+		{
+			return mUpdate;
+		}
+
+		@Override
+		public String toString()
+		{
+			return (mType==TYPE_START) ? "start" : (mType==TYPE_STOP) ? "stop" : ((mUpdate ? "update " : "new ")+mInfo);
+		}
+	}
+
+	/**
+	 * A receiver of discovery events.
+	 *
+	 * @since 1.1
+	 */
+	public interface Subscriber
+	{
+		/**
+		 * Called before any other method.
+		 *
+		 * @param subscription The subscription to request events or cancel.
+		 * @since 1.1
+		 */
+		void onSubscribe(Subscription subscription);
+
+		/**
+		 * Called for each requested event.
+		 *
+		 * @param event The event.
+		 * @since 1.1
+		 */
+		void onNext(DiscoverEvent event);
+
+		/**
+		 * Called when the publisher is closed, after the events already buffered.
+		 *
+		 * @since 1.1
+		 */
+		void onComplete();
+
+		/**
+		 * Called when the subscription fail, for example after an invalid request.
+		 * No other method is called after.
+		 *
+		 * @param error The error.
+		 * @since 1.1
+		 */
+		void onError(Throwable error);
+	}
+
+	/**
+	 * The link between the publisher and a subscriber.
+	 *
+	 * @since 1.1
+	 */
+	public interface Subscription
+	{
+		/**
+		 * Add demand.
+		 * An invalid number cancel the subscription, and the subscriber receive
+		 * {@link Subscriber#onError(Throwable)} with an {@link IllegalArgumentException}.
+		 *
+		 * @param n The number of events (> 0).
+		 * @since 1.1
+		 */
+		void request(long n);
+
+		/**
+		 * Stop to receive events.
+		 *
+		 * @since 1.1
+		 */
+		void cancel();
+
+		/**
+		 * Return the number of events dropped for this subscriber.
+		 *
+		 * @return The number of events.
+		 * @since 1.1
+		 */
+		long getDropped();
+	}
+
+	private final Overflow mOverflow;
+	private final int mCapacity;
+	private final Executor mExecutor;
+	private final List<SubscriptionImpl> mSubscriptions=new ArrayList<SubscriptionImpl>();
+	private ListRemoteAndroidInfo mList;
+	private boolean mClosed;
+
+	/*package*/ DiscoverPublisher(Overflow overflow,int capacity,Executor executor)
+	{
+		if (capacity<1)
+			throw new IllegalArgumentException("capacity");
+		mOverflow=overflow;
+		mCapacity=(overflow==Overflow.LATEST_ONLY) ? 1 : capacity;
+		mExecutor=executor;
+	}
+
+	/*package*/ void setList(ListRemoteAndroidInfo list)
+	{
+		mList=list;
+	}
+
+	/**
+	 * Return the container connected to the discovery process.
+	 *
+	 * @return The container.
+	 * @since 1.1
+	 */
+	public ListRemoteAndroidInfo getList()
+	{
+		return mList;
+	}
+
+	/**
+	 * Add a subscriber.
+	 *
+	 * @param subscriber The subscriber.
+	 * @since 1.1
+	 */
+	public void subscribe(Subscriber subscriber)
+	{
+		final SubscriptionImpl subscription=new SubscriptionImpl(subscriber);
+		final boolean closed;
+		synchronized (this)
+		{
+			closed=mClosed;
+			if (!closed)
+				mSubscriptions.add(subscription);
+		}
+		subscriber.onSubscribe(subscription);
+		if (closed)
+			subscriber.onComplete();
+	}
+
+	/**
+	 * Close the publisher and the container. The subscribers receive the events
+	 * already buffered as they request them, then are completed.
+	 *
+	 * @since 1.1
+	 */
+	public void close()
+	{
+		final SubscriptionImpl[] subscriptions;
+		synchronized (this)
+		{
+			if (mClosed)
+				return;
+			mClosed=true;
+			subscriptions=mSubscriptions.toArray(new SubscriptionImpl[mSubscriptions.size()]);
+			mSubscriptions.clear();
+		}
+		if (mList!=null)
+			mList.close();
+		for (SubscriptionImpl subscription:subscriptions)
+			subscription.complete();
+	}
+
+	/** @hide */
+	@Override
+	public void onDiscoverStart()
+	{
+		publish(new DiscoverEvent(DiscoverEvent.TYPE_START,null,false));
+	}
+
+	/** @hide */
+	@Override
+	public void onDiscoverStop()
+	{
+		publish(new DiscoverEvent(DiscoverEvent.TYPE_STOP,null,false));
+	}
+
+	/** @hide */
+	@Override
+	public void onDiscover(RemoteAndroidInfo remoteAndroidInfo, boolean update)
+	{
+		publish(new DiscoverEvent(DiscoverEvent.TYPE_DISCOVER,remoteAndroidInfo,update));
+	}
+
+	private void publish(DiscoverEvent event)
+	{
+		final SubscriptionImpl[] subscriptions;
+		synchronized (this)
+		{
+			if (mClosed)
+				return;
+			subscriptions=mSubscriptions.toArray(new SubscriptionImpl[mSubscriptions.size()]);
+		}
+		for (SubscriptionImpl subscription:subscriptions)
+			subscription.offer(event);
+	}
+
+	private final class SubscriptionImpl implements Subscription,Runnable
+	{
+		private final Subscriber mSubscriber;
+		// The key is the UUID when coalesce, else a unique object
+		private final LinkedHashMap<Object,DiscoverEvent> mBuffer=new LinkedHashMap<Object,DiscoverEvent>();
+		private long mDemand;
+		private long mDropped;
+		private boolean mScheduled;
+		private boolean mCancelled;
+		private boolean mCompleted;
+		private Throwable mError;
+
+		SubscriptionImpl(Subscriber subscriber)
+		{
+			mSubscriber=subscriber;
+		}
+
+		@Override
+		public void request(long n)
+		{
+			synchronized (this)
+			{
+				if (mCancelled || mError!=null)
+					return;
+				if (n<=0)
+				{
+					// Signal the error after the current events, and stop
+					mError=new IllegalArgumentException("n must be > 0");
+					mBuffer.clear();
+				}
+				else
+				{
+					mDemand+=n;
+					if (mDemand<0)
+						mDemand=Long.MAX_VALUE;
+				}
+			}
+			if (n<=0)
+			{
+				synchronized (DiscoverPublisher.this)
+				{
+					mSubscriptions.remove(this);
+				}
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel()
+		{
+			synchronized (this)
+			{
+				mCancelled=true;
+				mBuffer.clear();
+			}
+			synchronized (DiscoverPublisher.this)
+			{
+				mSubscriptions.remove(this);
+			}
+		}
+
+		@Override
+		public synchronized long getDropped()
+		{
+			return mDropped;
+		}
+
+		void offer(DiscoverEvent event)
+		{
+			synchronized (this)
+			{
+				if (mCancelled || mError!=null)
+					return;
+				final Object key=(mOverflow==Overflow.COALESCE_PER_UUID && event.getInfo()!=null)
+						? event.getInfo().getUuid()
+						: new Object();
+				final DiscoverEvent old=mBuffer.put(key,event);
+				if (old!=null)
+				{
+					++mDropped;
+					// The subscriber must see the device as new
+					if (!old.isUpdate() && event.isUpdate())
+						mBuffer.put(key,new DiscoverEvent(event.getType(),event.getInfo(),false));
+				}
+				for (Iterator<DiscoverEvent> i=mBuffer.values().iterator();mBuffer.size()>mCapacity;)
+				{
+					i.next();
+					i.remove();
+					++mDropped;
+				}
+			}
+			schedule();
+		}
+
+		void complete()
+		{
+			synchronized (this)
+			{
+				mCompleted=true;
+			}
+			schedule();
+		}
+
+		private void schedule()
+		{
+			synchronized (this)
+			{
+				if (mScheduled || mCancelled)
+					return;
+				// Deliver the buffer before the completion
+				if (mError==null && (mBuffer.isEmpty() ? !mCompleted : mDemand==0))
+					return;
+				mScheduled=true;
+			}
+			mExecutor.execute(this);
+		}
+
+		// Drain the buffer in the executor
+		@Override
+		public void run()
+		{
+			Throwable error=null;
+			for (;;)
+			{
+				final DiscoverEvent event;
+				synchronized (this)
+				{
+					if (mCancelled)
+					{
+						mScheduled=false;
+						return;
+					}
+					if (mError!=null)
+					{
+						mScheduled=false;
+						mCancelled=true;
+						error=mError;
+						break;
+					}
+					if (mBuffer.isEmpty() && mCompleted)
+					{
+						mScheduled=false;
+						mCancelled=true;
+						break;
+					}
+					if (mDemand==0 || mBuffer.isEmpty())
+					{
+						mScheduled=false;
+						return;
+					}
+					final Iterator<DiscoverEvent> i=mBuffer.values().iterator();
+					event=i.next();
+					i.remove();
+					if (mDemand!=Long.MAX_VALUE)
+						--mDemand;
+				}
+				mSubscriber.onNext(event);
+			}
+			if (error!=null)
+				mSubscriber.onError(error);
+			else
+				mSubscriber.onComplete();
+		}
+	}
+}
@@ -27,6 +27,8 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.util.Collection;
+import java.util.concurrent.Executor;
 
 import org.droid2droid.ListRemoteAndroidInfo.DiscoverListener;
 
@@ -105,6 +107,22 @@ public abstract class Droid2DroidManager implements Closeable
 	 * @since 1.0
 	 */
     public static final String PERMISSION_DISCOVER_RECEIVE="org.droid2droid.permission.discover.RECEIVE";
+
+    /** Permission to send a broadcast {@link #ACTION_INFOS_CHANGED}.
+     * It's a signature permission of the Droid2Droid application, so only this application
+     * can invalidate the local informations of the clients.
+     * 
+	 * @since 1.1
+	 */
+    public static final String PERMISSION_INFOS_SEND="org.droid2droid.permission.infos.SEND";
+
+    /** Permission to send a broadcast {@link #ACTION_INVALIDATE_CACHE}.
+     * It's a signature permission of the Droid2Droid application, so only this application
+     * can invalidate the cached results of the callers.
+     * 
+	 * @since 1.1
+	 */
+    public static final String PERMISSION_CACHE_SEND="org.droid2droid.permission.cache.SEND";
     
     /** Intent action when start Droid2Droid service. 
      * 
@@ -200,6 +218,50 @@ public abstract class Droid2DroidManager implements Closeable
 	 */
     public static final String EXTRA_UPDATE="update";
 
+    /** Intent action broadcasted when a remote service invalidate the cached results.
+     * The remote service send this broadcast in its device, and Droid2Droid forward it 
+     * to the connected callers, with {@link #EXTRA_CACHE_PEER}.
+     * The receivers must be registered with the permission {@link #PERMISSION_CACHE_SEND},
+     * else any application can flush the caches.
+     * <pre>
+     * context.registerReceiver(receiver, new IntentFilter(ACTION_INVALIDATE_CACHE), PERMISSION_CACHE_SEND, null);
+     * </pre>
+     * 
+     * @see {@link RemoteCallCache#onInvalidate(Intent)}
+     * @see {@link #EXTRA_CACHE_METHODS}
+	 * @since 1.1
+	 */
+    public static final String ACTION_INVALIDATE_CACHE="org.droid2droid.INVALIDATE_CACHE";
+
+    /** Extra in intent with the UUID of the remote Android&#8482; of the invalidated results.
+     * 
+     * @see {@link #ACTION_INVALIDATE_CACHE}
+	 * @since 1.1
+	 */
+    public static final String EXTRA_CACHE_PEER="cache.peer";
+
+    /** Extra in intent with the names of the invalidated methods. All the methods if not present.
+     * 
+     * @see {@link #ACTION_INVALIDATE_CACHE}
+	 * @since 1.1
+	 */
+    public static final String EXTRA_CACHE_METHODS="cache.methods";
+
+    /** Intent action broadcasted when the local informations are changed (name, URIs, ...).
+     * The senders must hold {@link #PERMISSION_INFOS_SEND}.
+     * 
+     * @see {@link #getInfosVersion()}
+	 * @since 1.1
+	 */
+    public static final String ACTION_INFOS_CHANGED="org.droid2droid.INFOS_CHANGED";
+
+    /** Extra in intent with a serialized {@link ConnectPayload}, to connect without discovery.
+     * 
+     * @see {@link #bindRemoteAndroid(ConnectPayload, ServiceConnection, int)}
+	 * @since 1.1
+	 */
+    public static final String EXTRA_CONNECT_PAYLOAD="connect.payload";
+
     /** Intent action when a Droid2Droid is discover. 
      * 
      * @see {@link #EXTRA_DISCOVER}
@@ -288,6 +350,8 @@ public abstract class Droid2DroidManager implements Closeable
     
     /**
      * Uri to create a bitmap with QRcode.
+     * The QRcode contains the URI of a {@link ConnectPayload} 
+     * (see {@link ConnectPayload#fromQRCodeUri(String)}).
      * <pre>
      * InputStream in=getContentResolver()
 	 *   .openTypedAssetFileDescriptor(RemoteAndroidManager.QRCODE_URI, "image/png", null)
@@ -350,6 +414,65 @@ public abstract class Droid2DroidManager implements Closeable
 	 */
     public abstract boolean bindRemoteAndroid(Intent service, ServiceConnection conn, int flags);
     
+    /**
+     * Bind to a remote Android&#8482; received with NFC or QRCode, without discovery.
+     * The URIs are tried in order, until the binding process can be started with one of them.
+     * A failure after the start of the binding (reported to the connection) is not tried with the next URI.
+     * 
+     * @param payload The payload from {@link ConnectPayload#fromNdefMessage(NdefMessage)} 
+     * 	or {@link ConnectPayload#fromQRCodeUri(String)}.
+     * @param conn The {@link ServiceConnection connection manager}.
+     * @param flags Flags to connect to remote Android&#8482;. 
+     * @return True if the binding process is started.
+     * 
+	 * @since 1.1
+	 */
+    public boolean bindRemoteAndroid(ConnectPayload payload, ServiceConnection conn, int flags)
+    {
+    	for (String uri:payload.getUris())
+    	{
+    		if (bindRemoteAndroid(payload.toIntent(uri), conn, flags))
+    			return true;
+    	}
+    	return false;
+    }
+    
+    /**
+     * Create a group to bind the same remote service in many remote Androids&#8482;, 
+     * and invoke it concurrently.
+     * 
+     * @param peers The remote Androids&#8482;.
+     * @param service The intent of the remote service.
+     * @param flags The flags for {@link RemoteAndroid#bindService(Intent, ServiceConnection, int)}.
+     * @param timeout The timeout in milliseconds for each call on a peer.
+     * @return The group. Invoke {@link RemoteAndroidGroup#connect(long)} before use it.
+     * 
+	 * @since 1.1
+	 */
+    public RemoteAndroidGroup newGroup(Collection<RemoteAndroidInfo> peers, Intent service, int flags, long timeout)
+    {
+    	return new RemoteAndroidGroup(this, peers, service, flags, timeout);
+    }
+    
+    /**
+     * Create a balancer to spread the calls of a remote service between 
+     * the remote Androids&#8482; with the same features.
+     * Register the balancer with {@link #newDiscoveredAndroid(Context, DiscoverListener)} 
+     * or add the peers with {@link RemoteAndroidBalancer#add(RemoteAndroidInfo)}.
+     * 
+     * @param features The mask of the requested features (ie. {@link RemoteAndroidInfo#FEATURE_CAMERA}).
+     * @param service The intent of the remote service.
+     * @param flags The flags for {@link RemoteAndroid#bindService(Intent, ServiceConnection, int)}.
+     * @param timeout The timeout in milliseconds for each call.
+     * @return The balancer.
+     * 
+	 * @since 1.1
+	 */
+    public RemoteAndroidBalancer newBalancer(long features, Intent service, int flags, long timeout)
+    {
+    	return new RemoteAndroidBalancer(this, features, service, flags, timeout);
+    }
+    
     /**
      * Start the discovery process. 
      * 
@@ -382,12 +505,25 @@ public abstract class Droid2DroidManager implements Closeable
     /**
      * Return the local Android&#8482; informations.
      * 
+     * Since 1.1, the informations are a snapshot kept in the process, and refreshed only 
+     * after {@link #ACTION_INFOS_CHANGED}. The snapshot is shared and must not be modified.
+     * 
      * @return The informations.
      * 
 	 * @since 1.0
 	 */
     public abstract RemoteAndroidInfo getInfos();
     
+    /**
+     * Return the version of the informations returned by {@link #getInfos()}.
+     * The version is incremented at each new snapshot. This method never use IPC.
+     * 
+     * @return The version.
+     * 
+	 * @since 1.1
+	 */
+    public abstract long getInfosVersion();
+    
     /**
      * Return the bonded devices
      * 
@@ -460,6 +596,9 @@ public abstract class Droid2DroidManager implements Closeable
     
     /**
      * Create NDeF message to expose.
+     * With a Droid2Droid application 1.1, the message contains a {@link ConnectPayload} record.
+     * With an older application, {@link ConnectPayload#fromNdefMessage(NdefMessage)} return <code>null</code>:
+     * publish {@link RemoteAndroidCompat#createConnectPayload(Droid2DroidManager)} with {@link ConnectPayload#toNdefRecord()}.
      * @return NDefMessage with own RemoteAndroidInfo.
      * 
      * @since 1.0
@@ -467,9 +606,24 @@ public abstract class Droid2DroidManager implements Closeable
     @TargetApi(9)
     public abstract NdefMessage createNdefMessage();
 
+    /**
+     * Create the payload to connect to this device without discovery, 
+     * with the current URIs and a new session ticket.
+     * @return The payload.
+     * 
+     * @see {@link RemoteAndroidCompat#createConnectPayload(Droid2DroidManager)}
+     * @since 1.1
+     */
+    public abstract ConnectPayload createConnectPayload();
+
     /**
      * Bind to a RemoteAndroidManager.
      * 
+     * All the clients in the process share the same manager. Each client receive 
+     * its own instance in {@link ManagerListener#bind(Droid2DroidManager)}, and 
+     * must {@link #close()} it. The shared manager is closed with the last client.
+     * The discovery requests of all the clients are merged in only one discovery process.
+     * 
      * @param context The context.
      * @param listener The listener.
      * 
@@ -478,7 +632,24 @@ public abstract class Droid2DroidManager implements Closeable
     public static void bindManager(final Context context,final ManagerListener listener)
     {
     	bootstrap();
-    	sFactory.newManager(context,listener);
+    	SharedManager.bind(sFactory,context,listener,null);
+    }
+
+    /**
+     * Bind to a RemoteAndroidManager, and invoke the listener in an executor.
+     * 
+     * @param context The context.
+     * @param listener The listener.
+     * @param executor The executor to invoke the listener. Use {@link CallbackExecutors#DIRECT}
+     * to invoke the listener in the thread of the service connection (the UI thread).
+     * 
+     * @see {@link #bindManager(Context, ManagerListener)}
+     * @since 1.1
+     */
+    public static void bindManager(final Context context,final ManagerListener listener,Executor executor)
+    {
+    	bootstrap();
+    	SharedManager.bind(sFactory,context,listener,executor);
     }
 
     /**
@@ -497,6 +668,43 @@ public abstract class Droid2DroidManager implements Closeable
     	bootstrap();
     	return sFactory.newDiscoveredAndroid(context,callback);
     }
+
+    /**
+     * Create a List&lt;{@link RemoteAndroidInfo}&gt; connected to the discovery process,
+     * and invoke the callback in an executor.
+     * 
+     * @param context The context.
+     * @param callback The callback to use to inform a new device is detected. 
+     * May be <code>null</code>.
+     * @param executor The executor to invoke the callback. Use {@link CallbackExecutors#DIRECT}
+     * to invoke the callback in the thread which deliver the events.
+     * @return An instance of DiscoveredAndroids container.
+     * 
+     * @since 1.1
+     */
+    public static ListRemoteAndroidInfo newDiscoveredAndroid(Context context,DiscoverListener callback,Executor executor)
+    {
+    	bootstrap();
+    	return sFactory.newDiscoveredAndroid(context,callback,executor);
+    }
+    
+    /**
+     * Create a publisher of discovery events, with flow control.
+     * 
+     * @param context The context.
+     * @param overflow The strategy when a subscriber is too slow.
+     * @param capacity The maximum number of events buffered for each subscriber.
+     * @param executor The executor to deliver the events to the subscribers.
+     * @return The publisher. The container is available with {@link DiscoverPublisher#getList()}.
+     * 
+     * @since 1.1
+     */
+    public static DiscoverPublisher newDiscoveredPublisher(Context context,DiscoverPublisher.Overflow overflow,int capacity,Executor executor)
+    {
+    	final DiscoverPublisher publisher=new DiscoverPublisher(overflow,capacity,executor);
+    	publisher.setList(newDiscoveredAndroid(context,publisher));
+    	return publisher;
+    }
     
     // Hack to manage shared library with Android
     private static ClassLoader getClassLoaderSingleton(final Context context) throws Error
@@ -23,6 +23,8 @@
 ******************************************************************************/
 package org.droid2droid;
 
+import java.util.concurrent.Executor;
+
 import org.droid2droid.ListRemoteAndroidInfo.DiscoverListener;
 import org.droid2droid.Droid2DroidManager.ManagerListener;
 
@@ -37,4 +39,16 @@ abstract class Factories
     public abstract ListRemoteAndroidInfo newDiscoveredAndroid(Context context,DiscoverListener callback);
     
     public abstract void newManager(final Context context,final ManagerListener listener);
+
+    /**
+     * Create a list, with a callback invoked in an executor.
+     * The implementation override this method to dispatch the callback from the discovery thread,
+     * without the UI thread. By default, the callback is wrapped.
+     * 
+     * @since 1.1
+     */
+    public ListRemoteAndroidInfo newDiscoveredAndroid(Context context,DiscoverListener callback,Executor executor)
+    {
+    	return newDiscoveredAndroid(context,CallbackExecutors.wrap(callback,executor));
+    }
 }
@@ -0,0 +1,197 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.util.Arrays;
+
+import android.os.SystemClock;
+
+/**
+ * A local snapshot of a {@link RemoteAndroidInfo}, refreshed only after a change notification.
+ *
+ * The first call to {@link #get(Loader)} load the informations (may be an IPC). The next calls
+ * return the same instance, until {@link #invalidate()} or {@link #update(RemoteAndroidInfo)}.
+ * Without change notification (1.0 application), set a maximum age with {@link #setMaxAge(long)}.
+ * The concurrent loads are coalesced: only one thread load, the others wait the result.
+ * The version is incremented only when the informations are different, so the callers
+ * can check if a copy is stale.
+ * The snapshot is shared, and must not be modified.
+ */
+/*package*/ final class InfoSnapshot
+{
+	/**
+	 * Load the current informations.
+	 */
+	public interface Loader
+	{
+		/**
+		 * @return The informations.
+		 */
+		RemoteAndroidInfo load();
+	}
+
+	private RemoteAndroidInfo mInfo;
+	private long mLoadTime;
+	private long mMaxAge;
+	private long mVersion;
+	private long mGeneration;
+	private boolean mStale=true;
+	private boolean mLoading;
+
+	/**
+	 * Return the snapshot, and load it if stale.
+	 *
+	 * @param loader The loader.
+	 * @return The snapshot.
+	 */
+	public RemoteAndroidInfo get(Loader loader)
+	{
+		final long generation;
+		synchronized (this)
+		{
+			while (mLoading)
+			{
+				try
+				{
+					wait();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					return mInfo;
+				}
+			}
+			if (!mStale && (mMaxAge<=0 || SystemClock.elapsedRealtime()-mLoadTime<mMaxAge))
+				return mInfo;
+			mLoading=true;
+			generation=mGeneration;
+		}
+		RemoteAndroidInfo info=null;
+		try
+		{
+			info=loader.load();
+			return info;
+		}
+		finally
+		{
+			synchronized (this)
+			{
+				mLoading=false;
+				if (info!=null)
+				{
+					set(info);
+					mLoadTime=SystemClock.elapsedRealtime();
+					// Stay stale if a notification is received during the load
+					mStale=(generation!=mGeneration);
+				}
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Return the last snapshot, without load.
+	 *
+	 * @return The snapshot, or <code>null</code> if never loaded.
+	 */
+	public synchronized RemoteAndroidInfo peek()
+	{
+		return mInfo;
+	}
+
+	/**
+	 * Set a new snapshot, received with the change notification.
+	 *
+	 * @param info The informations.
+	 */
+	public synchronized void update(RemoteAndroidInfo info)
+	{
+		set(info);
+		mLoadTime=SystemClock.elapsedRealtime();
+		++mGeneration;
+		mStale=false;
+	}
+
+	/**
+	 * Set the maximum age of the snapshot, if the changes are not notified.
+	 *
+	 * @param maxAge The maximum age in milliseconds, or 0 to keep the snapshot until a notification.
+	 */
+	public synchronized void setMaxAge(long maxAge)
+	{
+		mMaxAge=maxAge;
+	}
+
+	/**
+	 * The informations are changed. The next {@link #get(Loader)} load them again.
+	 */
+	public synchronized void invalidate()
+	{
+		++mGeneration;
+		mStale=true;
+	}
+
+	/**
+	 * @return The version of the snapshot. Incremented when the informations are changed.
+	 */
+	public synchronized long getVersion()
+	{
+		return mVersion;
+	}
+
+	/**
+	 * @return <code>true</code> if a change is notified since the last load.
+	 */
+	public synchronized boolean isStale()
+	{
+		return mStale;
+	}
+
+	// Must be called with the lock. A reload with the same values keep the version
+	private void set(RemoteAndroidInfo info)
+	{
+		if (mInfo==null || !same(mInfo,info))
+			++mVersion;
+		mInfo=info;
+	}
+
+	// RemoteAndroidInfo.equals() may compare only the identity of the device
+	private static boolean same(RemoteAndroidInfo a,RemoteAndroidInfo b)
+	{
+		return equals(a.getUuid(),b.getUuid())
+			&& equals(a.getName(),b.getName())
+			&& equals(a.getPublicKey(),b.getPublicKey())
+			&& a.getVersion()==b.getVersion()
+			&& equals(a.getOs(),b.getOs())
+			&& a.getFeature()==b.getFeature()
+			&& a.isBound()==b.isBound()
+			&& a.isDiscover()==b.isDiscover()
+			&& Arrays.equals(a.getUris(),b.getUris());
+	}
+
+	private static boolean equals(Object a,Object b)
+	{
+		return (a==null) ? b==null : a.equals(b);
+	}
+}
@@ -0,0 +1,141 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * The quality of the link with a remote Android&#8482;, measured with heartbeats.
+ *
+ * @see {@link RemoteAndroid#getLinkQuality()}
+ *
+ * @since 1.1
+ */
+public final class LinkQuality implements Parcelable
+{
+	private final float mRtt;
+	private final float mRttVariation;
+	private final float mJitter;
+	private final float mLoss;
+	private final int mSamples;
+
+	/**
+	 * @hide
+	 */
+	public LinkQuality(float rtt,float rttVariation,float jitter,float loss,int samples)
+	{
+		mRtt=rtt;
+		mRttVariation=rttVariation;
+		mJitter=jitter;
+		mLoss=loss;
+		mSamples=samples;
+	}
+
+	/** The smoothed round trip time in milliseconds.
+	 * @since 1.1
+	 */
+	public float getRtt()
+	{
+		return mRtt;
+	}
+
+	/** The variation of the round trip time in milliseconds.
+	 * @since 1.1
+	 */
+	public float getRttVariation()
+	{
+		return mRttVariation;
+	}
+
+	/** The jitter in milliseconds.
+	 * @since 1.1
+	 */
+	public float getJitter()
+	{
+		return mJitter;
+	}
+
+	/** The ratio of lost heartbeats, between 0 and 1.
+	 * @since 1.1
+	 */
+	public float getLoss()
+	{
+		return mLoss;
+	}
+
+	/** The number of round trip times measured, with the answered heartbeats and the
+	 * remote calls. The lost heartbeats are not counted. Zero if the quality is unknown.
+	 * @since 1.1
+	 */
+	public int getSamples()
+	{
+		return mSamples;
+	}
+
+	/** The retransmission timeout (RTT + 4 * variation), in milliseconds.
+	 * @since 1.1
+	 */
+	public float getRto()
+	{
+		return mRtt+4*mRttVariation;
+	}
+
+	@Override
+	public int describeContents()
+	{
+		return 0;
+	}
+
+	@Override
+	public void writeToParcel(Parcel dest, int flags)
+	{
+		dest.writeFloat(mRtt);
+		dest.writeFloat(mRttVariation);
+		dest.writeFloat(mJitter);
+		dest.writeFloat(mLoss);
+		dest.writeInt(mSamples);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "rtt="+mRtt+"ms var="+mRttVariation+"ms jitter="+mJitter+"ms loss="+mLoss+" samples="+mSamples;
+	}
+
+	public static final Parcelable.Creator<LinkQuality> CREATOR=new Parcelable.Creator<LinkQuality>()
+	{
+		@Override
+		public LinkQuality createFromParcel(Parcel source)
+		{
+			return new LinkQuality(source.readFloat(),source.readFloat(),source.readFloat(),source.readFloat(),source.readInt());
+		}
+
+		@Override
+		public LinkQuality[] newArray(int size)
+		{
+			return new LinkQuality[size];
+		}
+	};
+}
@@ -0,0 +1,131 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+/**
+ * Estimate the quality of a link from the heartbeats.
+ *
+ * The round trip time is smoothed like TCP (RFC 6298), the jitter is computed
+ * like RTP (RFC 3550), and the loss is the ratio of the last 64 heartbeats
+ * without answer before the next one.
+ *
+ * @hide
+ */
+public final class LinkQualityEstimator
+{
+	private static final int WINDOW=64;
+
+	private long mPendingSeq=-1;
+	private long mPendingNanos;
+	private double mSrtt;
+	private double mRttVar;
+	private double mJitter;
+	private double mLastRtt=-1;
+	private int mSamples;
+	// One bit per heartbeat, 1 if lost
+	private long mHistory;
+	private int mHistorySize;
+
+	/**
+	 * A heartbeat is sent. The previous one is lost if not answered.
+	 *
+	 * @param seq The sequence number.
+	 * @param nanos The time ({@link System#nanoTime()}).
+	 */
+	public synchronized void onSent(long seq,long nanos)
+	{
+		if (mPendingSeq>=0)
+			record(true);
+		mPendingSeq=seq;
+		mPendingNanos=nanos;
+	}
+
+	/**
+	 * The answer of a heartbeat is received.
+	 *
+	 * @param seq The sequence number.
+	 * @param nanos The time ({@link System#nanoTime()}).
+	 */
+	public synchronized void onAck(long seq,long nanos)
+	{
+		if (seq!=mPendingSeq)
+			return; // Too late, already counted as lost
+		mPendingSeq=-1;
+		record(false);
+		sample((nanos-mPendingNanos)/1000000.0);
+	}
+
+	/**
+	 * Add a round trip time measured with a call.
+	 *
+	 * @param rtt The round trip time in milliseconds.
+	 */
+	public synchronized void sample(double rtt)
+	{
+		if (mSamples==0)
+		{
+			mSrtt=rtt;
+			mRttVar=rtt/2;
+		}
+		else
+		{
+			mRttVar=0.75*mRttVar+0.25*Math.abs(mSrtt-rtt);
+			mSrtt=0.875*mSrtt+0.125*rtt;
+		}
+		if (mLastRtt>=0)
+			mJitter+=(Math.abs(rtt-mLastRtt)-mJitter)/16;
+		mLastRtt=rtt;
+		++mSamples;
+	}
+
+	/**
+	 * @return The current quality.
+	 */
+	public synchronized LinkQuality getQuality()
+	{
+		final float loss=(mHistorySize==0) ? 0 : (float)Long.bitCount(mHistory)/mHistorySize;
+		return new LinkQuality((float)mSrtt,(float)mRttVar,(float)mJitter,loss,mSamples);
+	}
+
+	/**
+	 * Compute the effective timeout for a remote call.
+	 *
+	 * @param configured The timeout set with {@link RemoteAndroid#setExecuteTimeout(long)}. It's the maximum.
+	 * @param floor The minimum time for the remote service, in milliseconds.
+	 * @return The configured timeout if the RTT is unknown, else <code>floor + RTO</code> up to the configured timeout.
+	 */
+	public synchronized long getEffectiveTimeout(long configured,long floor)
+	{
+		if (mSamples==0 || floor<=0)
+			return configured;
+		return Math.min(configured,floor+(long)Math.ceil(mSrtt+4*mRttVar));
+	}
+
+	private void record(boolean lost)
+	{
+		mHistory=(mHistory<<1) | (lost ? 1 : 0);
+		if (mHistorySize<WINDOW)
+			++mHistorySize;
+	}
+}
@@ -24,6 +24,7 @@
 package org.droid2droid;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * A container, directly connected to the discover process.
@@ -88,6 +89,19 @@ public interface ListRemoteAndroidInfo extends List<RemoteAndroidInfo>
 	 */
 	public void setListener(DiscoverListener listener);
 
+	/**
+	 * Register a listener, invoked in an executor.
+	 * 
+	 * @param listener The listener.
+	 * @param executor The executor to invoke the listener. Use {@link CallbackExecutors#DIRECT}
+	 * to invoke the listener in the thread which deliver the events.
+	 * 
+	 * @see {@link CallbackExecutors#wrap(DiscoverListener, java.util.concurrent.Executor)}
+	 * @see {@link RemoteAndroidCompat#setListener(ListRemoteAndroidInfo, DiscoverListener, Executor)}
+	 * @since 1.1
+	 */
+	public void setListener(DiscoverListener listener,Executor executor);
+
 	/**
 	 * Close the list.
 	 * 
@@ -0,0 +1,264 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.droid2droid.ListRemoteAndroidInfo.DiscoverListener;
+
+import android.util.Log;
+
+/**
+ * Store and forward the requests for the remote Androids&#8482; out of range.
+ *
+ * The requests are appended to a {@link PeerOutbox} for each peer. When the discovery
+ * process see the peer again, the records are sent in batches, in order.
+ * Register the dispatcher with {@link Droid2DroidManager#newDiscoveredAndroid(android.content.Context, DiscoverListener)}.
+ * <pre>
+ * OutboxDispatcher outbox=new OutboxDispatcher(context.getDir("outbox", 0), 1000, 1024*1024, 50, executor, sender);
+ * ListRemoteAndroidInfo list=Droid2DroidManager.newDiscoveredAndroid(context, outbox);
+ * ...
+ * outbox.enqueue(info.getUuid(), parcel.marshall());
+ * </pre>
+ *
+ * @since 1.1
+ */
+public final class OutboxDispatcher implements DiscoverListener
+{
+	private static final String TAG="OutboxDispatcher";
+
+	/**
+	 * Send a batch of records to a remote Android&#8482;.
+	 *
+	 * @since 1.1
+	 */
+	public interface Sender
+	{
+		/**
+		 * Send the records, in order. Invoked in the executor.
+		 *
+		 * @param peer The remote Android&#8482;.
+		 * @param records The records.
+		 * @throws Exception If the records are not delivered. They will be sent again.
+		 * @since 1.1
+		 */
+		void send(RemoteAndroidInfo peer,List<byte[]> records) throws Exception;
+	}
+
+	private final File mDir;
+	private final int mMaxRecords;
+	private final long mMaxBytes;
+	private final int mBatch;
+	private final Executor mExecutor;
+	private final Sender mSender;
+	private final Map<UUID,PeerOutbox> mOutboxes=new HashMap<UUID,PeerOutbox>();
+	private final Set<UUID> mFlushing=new HashSet<UUID>();
+
+	/**
+	 * @param dir The directory of the queues.
+	 * @param maxRecords The maximum number of records for each peer.
+	 * @param maxBytes The maximum size of the records for each peer.
+	 * @param batch The maximum number of records sent in one batch.
+	 * @param executor The executor to send the records.
+	 * @param sender The sender.
+	 * @since 1.1
+	 */
+	public OutboxDispatcher(File dir,int maxRecords,long maxBytes,int batch,Executor executor,Sender sender)
+	{
+		mDir=dir;
+		mMaxRecords=maxRecords;
+		mMaxBytes=maxBytes;
+		mBatch=batch;
+		mExecutor=executor;
+		mSender=sender;
+	}
+
+	/**
+	 * Append a request for a peer.
+	 *
+	 * @param peer The remote Android&#8482;.
+	 * @param record The serialized request.
+	 * @return <code>false</code> if the queue is full.
+	 * @throws IOException If the record can not be written.
+	 * @since 1.1
+	 */
+	public boolean enqueue(UUID peer,byte[] record) throws IOException
+	{
+		return getOutbox(peer).offer(record);
+	}
+
+	/**
+	 * Return the number of requests waiting for a peer.
+	 *
+	 * @param peer The remote Android&#8482;.
+	 * @return The depth of the queue.
+	 * @throws IOException If the queue can not be opened.
+	 * @since 1.1
+	 */
+	public int getDepth(UUID peer) throws IOException
+	{
+		return getOutbox(peer).size();
+	}
+
+	/**
+	 * Return the queue of a peer.
+	 *
+	 * @param peer The remote Android&#8482;.
+	 * @return The queue.
+	 * @throws IOException If the queue can not be opened.
+	 * @since 1.1
+	 */
+	public synchronized PeerOutbox getOutbox(UUID peer) throws IOException
+	{
+		PeerOutbox outbox=mOutboxes.get(peer);
+		if (outbox==null)
+		{
+			outbox=new PeerOutbox(mDir,peer,mMaxRecords,mMaxBytes);
+			mOutboxes.put(peer,outbox);
+		}
+		return outbox;
+	}
+
+	/**
+	 * Send the waiting requests to a reachable peer.
+	 *
+	 * Only record the peer here: the queue is opened, recovered and sent in the executor.
+	 *
+	 * @param peer The remote Android&#8482;.
+	 * @since 1.1
+	 */
+	public void flush(final RemoteAndroidInfo peer)
+	{
+		// Not the lock of the queues: the discovery thread never wait a file operation
+		synchronized (mFlushing)
+		{
+			if (!mFlushing.add(peer.getUuid()))
+				return;
+		}
+		try
+		{
+			mExecutor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						final PeerOutbox outbox=openIfExists(peer.getUuid());
+						if (outbox==null || outbox.size()==0)
+							return;
+						outbox.sync();
+						for (;;)
+						{
+							final List<byte[]> records=outbox.peek(mBatch);
+							if (records.isEmpty())
+								break;
+							mSender.send(peer,records);
+							outbox.ack(records.size());
+						}
+					}
+					catch (Exception e)
+					{
+						Log.w(TAG,"Flush "+peer.getUuid()+" interrupted",e);
+					}
+					finally
+					{
+						synchronized (mFlushing)
+						{
+							mFlushing.remove(peer.getUuid());
+						}
+					}
+				}
+			});
+		}
+		catch (RejectedExecutionException e)
+		{
+			synchronized (mFlushing)
+			{
+				mFlushing.remove(peer.getUuid());
+			}
+			Log.w(TAG,"Flush "+peer.getUuid()+" rejected",e);
+		}
+	}
+
+	// Open the queue written before a restart of the process, without create an empty one
+	private synchronized PeerOutbox openIfExists(UUID peer) throws IOException
+	{
+		if (!mOutboxes.containsKey(peer) && !new File(mDir,peer+".queue").exists())
+			return null;
+		return getOutbox(peer);
+	}
+
+	/**
+	 * Close all the queues.
+	 *
+	 * @since 1.1
+	 */
+	public synchronized void close()
+	{
+		for (PeerOutbox outbox:mOutboxes.values())
+		{
+			try
+			{
+				outbox.close();
+			}
+			catch (IOException e)
+			{
+				Log.w(TAG,"Close "+outbox.getPeer(),e);
+			}
+		}
+		mOutboxes.clear();
+	}
+
+	/** @hide */
+	@Override
+	public void onDiscoverStart()
+	{
+	}
+
+	/** @hide */
+	@Override
+	public void onDiscoverStop()
+	{
+	}
+
+	/** Flush the queue of the discovered peer.
+	 * @hide
+	 */
+	@Override
+	public void onDiscover(RemoteAndroidInfo remoteAndroidInfo, boolean update)
+	{
+		if (remoteAndroidInfo.isDiscover())
+			flush(remoteAndroidInfo);
+	}
+}
@@ -0,0 +1,355 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * A durable queue of requests for a remote Android&#8482; out of range.
+ *
+ * The records (oneway calls, pushMe requests) are appended to a file, in order.
+ * The file is synchronized to the storage by batch. The records are removed
+ * only when acknowledged, so the delivery is at least once, in order.
+ * The position of the first record is synchronized by batch too: after a crash,
+ * the last acknowledged records may be delivered again.
+ * A torn record at the end of the file (crash during write) is ignored.
+ *
+ * @see {@link OutboxDispatcher}
+ *
+ * @since 1.1
+ */
+public final class PeerOutbox implements Closeable
+{
+	/** The number of records appended before synchronize the file. */
+	private static final int SYNC_BATCH=16;
+
+	/** Compact the file when the acknowledged records use more than this size. */
+	private static final long COMPACT_THRESHOLD=64*1024;
+
+	/** Header of a record: length and CRC32. */
+	private static final int HEADER=8;
+
+	private final UUID mPeer;
+	private final File mFile;
+	private final File mHeadFile;
+	private final int mMaxRecords;
+	private final long mMaxBytes;
+	private RandomAccessFile mData;
+	private long mHead;
+	private int mCount;
+	private int mUnsynced;
+	private int mUnsyncedAcks;
+	private long mOffered;
+	private long mRejected;
+
+	/**
+	 * Open or create the queue.
+	 *
+	 * @param dir The directory of the queues (ie. <code>context.getDir("outbox", 0)</code>).
+	 * @param peer The remote Android&#8482;.
+	 * @param maxRecords The maximum number of records.
+	 * @param maxBytes The maximum size of the records.
+	 * @throws IOException If the file can not be opened.
+	 * @since 1.1
+	 */
+	public PeerOutbox(File dir,UUID peer,int maxRecords,long maxBytes) throws IOException
+	{
+		mPeer=peer;
+		mFile=new File(dir,peer+".queue");
+		mHeadFile=new File(dir,peer+".head");
+		mMaxRecords=maxRecords;
+		mMaxBytes=maxBytes;
+		mData=new RandomAccessFile(mFile,"rw");
+		mHead=readHead();
+		recover();
+	}
+
+	/**
+	 * @return The remote Android&#8482;.
+	 * @since 1.1
+	 */
+	public UUID getPeer()
+	{
+		return mPeer;
+	}
+
+	/**
+	 * Append a record.
+	 *
+	 * @param record The record.
+	 * @return <code>false</code> if the queue is full.
+	 * @throws IOException If the record can not be written.
+	 * @since 1.1
+	 */
+	public synchronized boolean offer(byte[] record) throws IOException
+	{
+		if (mCount>=mMaxRecords || bytes()+HEADER+record.length>mMaxBytes)
+		{
+			++mRejected;
+			return false;
+		}
+		final CRC32 crc=new CRC32();
+		crc.update(record);
+		mData.seek(mData.length());
+		mData.writeInt(record.length);
+		mData.writeInt((int)crc.getValue());
+		mData.write(record);
+		++mCount;
+		++mOffered;
+		if (++mUnsynced>=SYNC_BATCH)
+			sync();
+		return true;
+	}
+
+	/**
+	 * Synchronize the records and the position of the first record to the storage.
+	 *
+	 * @throws IOException If the file can not be synchronized.
+	 * @since 1.1
+	 */
+	public synchronized void sync() throws IOException
+	{
+		if (mUnsynced!=0)
+		{
+			mData.getFD().sync();
+			mUnsynced=0;
+		}
+		if (mUnsyncedAcks!=0)
+			writeHead(true);
+	}
+
+	/**
+	 * Read the first records, without remove them.
+	 *
+	 * @param max The maximum number of records.
+	 * @return The records, in order.
+	 * @throws IOException If the file can not be read.
+	 * @since 1.1
+	 */
+	public synchronized List<byte[]> peek(int max) throws IOException
+	{
+		final List<byte[]> records=new ArrayList<byte[]>(Math.min(max,mCount));
+		long pos=mHead;
+		mData.seek(pos);
+		for (int i=0;i<max && i<mCount;++i)
+		{
+			final int len=mData.readInt();
+			mData.readInt();
+			final byte[] record=new byte[len];
+			mData.readFully(record);
+			records.add(record);
+		}
+		return records;
+	}
+
+	/**
+	 * Remove the first records, delivered to the remote Android&#8482;.
+	 * The new position is synchronized to the storage by batch, or with the compaction.
+	 *
+	 * @param count The number of records.
+	 * @throws IOException If the file can not be updated.
+	 * @since 1.1
+	 */
+	public synchronized void ack(int count) throws IOException
+	{
+		count=Math.min(count,mCount);
+		long pos=mHead;
+		for (int i=0;i<count;++i)
+		{
+			mData.seek(pos);
+			pos+=HEADER+mData.readInt();
+		}
+		mHead=pos;
+		mCount-=count;
+		if (mCount==0 || (mHead>COMPACT_THRESHOLD && mHead*2>mData.length()))
+			compact();
+		else
+			writeHead(++mUnsyncedAcks>=SYNC_BATCH);
+	}
+
+	/**
+	 * @return The number of records waiting.
+	 * @since 1.1
+	 */
+	public synchronized int size()
+	{
+		return mCount;
+	}
+
+	/**
+	 * @return The size of the records waiting.
+	 * @since 1.1
+	 */
+	public synchronized long bytes()
+	{
+		try
+		{
+			return mData.length()-mHead;
+		}
+		catch (IOException e)
+		{
+			return 0;
+		}
+	}
+
+	/**
+	 * @return The number of records accepted since the queue is opened.
+	 * @since 1.1
+	 */
+	public synchronized long getOffered()
+	{
+		return mOffered;
+	}
+
+	/**
+	 * @return The number of records refused because the queue is full.
+	 * @since 1.1
+	 */
+	public synchronized long getRejected()
+	{
+		return mRejected;
+	}
+
+	/**
+	 * Synchronize and close the file.
+	 *
+	 * @since 1.1
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		sync();
+		mData.close();
+	}
+
+	// Count the valid records, and cut a torn tail
+	private void recover() throws IOException
+	{
+		final long length=mData.length();
+		if (mHead>length)
+			mHead=0;
+		long pos=mHead;
+		mCount=0;
+		final CRC32 crc=new CRC32();
+		while (pos+HEADER<=length)
+		{
+			mData.seek(pos);
+			final int len=mData.readInt();
+			final int check=mData.readInt();
+			if (len<0 || pos+HEADER+len>length)
+				break;
+			final byte[] record=new byte[len];
+			mData.readFully(record);
+			crc.reset();
+			crc.update(record);
+			if ((int)crc.getValue()!=check)
+				break;
+			pos+=HEADER+len;
+			++mCount;
+		}
+		if (pos!=length)
+		{
+			mData.setLength(pos);
+			mData.getFD().sync();
+		}
+	}
+
+	// Rewrite the file without the acknowledged records
+	private void compact() throws IOException
+	{
+		final File tmp=new File(mFile.getPath()+".tmp");
+		final RandomAccessFile out=new RandomAccessFile(tmp,"rw");
+		try
+		{
+			out.setLength(0);
+			final byte[] buf=new byte[8192];
+			mData.seek(mHead);
+			int n;
+			while ((n=mData.read(buf))>0)
+				out.write(buf,0,n);
+			out.getFD().sync();
+		}
+		finally
+		{
+			out.close();
+		}
+		mData.close();
+		// A crash before the rename deliver again the acknowledged records (at least once)
+		final long head=mHead;
+		mHead=0;
+		writeHead(true);
+		final boolean renamed=tmp.renameTo(mFile);
+		mData=new RandomAccessFile(mFile,"rw");
+		mUnsynced=0;
+		if (!renamed)
+		{
+			// Keep the old file, with the old head
+			mHead=head;
+			writeHead(true);
+			tmp.delete();
+			throw new IOException("Can't rename "+tmp);
+		}
+	}
+
+	private long readHead() throws IOException
+	{
+		if (!mHeadFile.exists())
+			return 0;
+		final RandomAccessFile in=new RandomAccessFile(mHeadFile,"r");
+		try
+		{
+			return (in.length()>=8) ? in.readLong() : 0;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	// Without synchronization, a crash may keep an old position: the records are delivered again
+	private void writeHead(boolean sync) throws IOException
+	{
+		final RandomAccessFile out=new RandomAccessFile(mHeadFile,"rw");
+		try
+		{
+			out.writeLong(mHead);
+			if (sync)
+			{
+				out.getFD().sync();
+				mUnsyncedAcks=0;
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+}
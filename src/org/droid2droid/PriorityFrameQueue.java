@@ -0,0 +1,199 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.util.LinkedList;
+
+import android.content.Intent;
+
+/**
+ * The outgoing frames of a connection shared by all the bindings to the same remote Android&#8482;.
+ *
+ * The frames are scheduled with a deficit round robin between the priority classes,
+ * so a bulk transfer (pushMe) can't starve interactive calls.
+ *
+ * @hide
+ */
+public final class PriorityFrameQueue<F>
+{
+	/** Index of the interactive class. */
+	public static final int INTERACTIVE=RemoteAndroid.PRIORITY_INTERACTIVE;
+	/** Index of the normal class. */
+	public static final int NORMAL=RemoteAndroid.PRIORITY_NORMAL;
+	/** Index of the bulk class. */
+	public static final int BULK=RemoteAndroid.PRIORITY_BULK;
+
+	/** Bytes credited at each round for a class with weight 1. */
+	private static final int QUANTUM=1024;
+
+	private static final int[] WEIGHTS={16,4,1};
+
+	private static final class Frame<F>
+	{
+		final F mFrame;
+		final int mSize;
+		Frame(F frame,int size)
+		{
+			mFrame=frame;
+			mSize=size;
+		}
+	}
+
+	@SuppressWarnings({"unchecked","rawtypes"})
+	private final LinkedList<Frame<F>>[] mQueues=new LinkedList[]
+		{
+			new LinkedList<Frame<F>>(),
+			new LinkedList<Frame<F>>(),
+			new LinkedList<Frame<F>>()
+		};
+	private final int[] mDeficits=new int[WEIGHTS.length];
+	private int mCurrent;
+	private boolean mFreshVisit=true;
+	private int mSize;
+	private boolean mClosed;
+
+	/**
+	 * Return the class index for the intent of bindService().
+	 * The service must remove {@link RemoteAndroid#EXTRA_PRIORITY} before binding the local service.
+	 *
+	 * @param intent The intent.
+	 * @param defaultClass The class to use if the intent has no priority.
+	 * @return {@link #INTERACTIVE}, {@link #NORMAL} or {@link #BULK}.
+	 */
+	public static int priorityOf(Intent intent,int defaultClass)
+	{
+		final int priority=intent.getIntExtra(RemoteAndroid.EXTRA_PRIORITY,defaultClass);
+		if (priority<INTERACTIVE || priority>BULK)
+			throw new IllegalArgumentException("Invalid priority "+priority);
+		return priority;
+	}
+
+	/**
+	 * Add a frame.
+	 *
+	 * @param frame The frame.
+	 * @param size The size in bytes on the wire.
+	 * @param priority {@link #INTERACTIVE}, {@link #NORMAL} or {@link #BULK}.
+	 */
+	public synchronized void offer(F frame,int size,int priority)
+	{
+		if (mClosed)
+			throw new IllegalStateException("Closed");
+		mQueues[priority].addLast(new Frame<F>(frame,size));
+		++mSize;
+		notifyAll();
+	}
+
+	/**
+	 * Remove the next frame to send.
+	 *
+	 * @return The frame or <code>null</code> if the queue is empty.
+	 */
+	public synchronized F poll()
+	{
+		if (mSize==0)
+			return null;
+		for (;;)
+		{
+			final LinkedList<Frame<F>> queue=mQueues[mCurrent];
+			if (queue.isEmpty())
+			{
+				mDeficits[mCurrent]=0;
+				next();
+				continue;
+			}
+			if (mFreshVisit)
+			{
+				mDeficits[mCurrent]+=QUANTUM*WEIGHTS[mCurrent];
+				mFreshVisit=false;
+			}
+			final Frame<F> head=queue.getFirst();
+			if (head.mSize<=mDeficits[mCurrent])
+			{
+				mDeficits[mCurrent]-=head.mSize;
+				queue.removeFirst();
+				--mSize;
+				if (queue.isEmpty())
+				{
+					mDeficits[mCurrent]=0;
+					next();
+				}
+				return head.mFrame;
+			}
+			next();
+		}
+	}
+
+	/**
+	 * Wait and remove the next frame to send.
+	 *
+	 * @return The frame or <code>null</code> if the queue is closed.
+	 * @throws InterruptedException If the thread is interrupted.
+	 */
+	public synchronized F take() throws InterruptedException
+	{
+		while (mSize==0 && !mClosed)
+			wait();
+		return poll();
+	}
+
+	/**
+	 * Return the number of frames waiting for a class.
+	 *
+	 * @param priority The class.
+	 * @return The number of frames.
+	 */
+	public synchronized int size(int priority)
+	{
+		return mQueues[priority].size();
+	}
+
+	/**
+	 * Return the number of frames waiting.
+	 *
+	 * @return The number of frames.
+	 */
+	public synchronized int size()
+	{
+		return mSize;
+	}
+
+	/**
+	 * Close the queue and wake up the readers. The pending frames are dropped.
+	 */
+	public synchronized void close()
+	{
+		mClosed=true;
+		for (LinkedList<Frame<F>> queue:mQueues)
+			queue.clear();
+		mSize=0;
+		notifyAll();
+	}
+
+	private void next()
+	{
+		mCurrent=(mCurrent+1) % mQueues.length;
+		mFreshVisit=true;
+	}
+}
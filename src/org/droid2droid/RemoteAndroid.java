@@ -24,6 +24,7 @@
 package org.droid2droid;
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 import android.content.Context;
 import android.content.Intent;
@@ -63,6 +64,34 @@ public interface RemoteAndroid
 	 * @since 1.0 
 	 */
 	public static final int ERROR_INSTALL_REFUSE_FOR_UNKNOW_SOURCE=-2;
+
+	/** Extra in the intent of {@link #bindService(Intent, ServiceConnection, int)} with the priority class
+	 * of the calls: {@link #PRIORITY_INTERACTIVE}, {@link #PRIORITY_NORMAL} or {@link #PRIORITY_BULK}.
+	 * The frames of all the connections to the same remote Android&#8482; 
+	 * share the link with a weighted fair queuing. 
+	 * The priority is not in the flags, because the flags are given to {@link Context#bindService(Intent, ServiceConnection, int)}
+	 * in the remote Android&#8482;.
+	 * @since 1.1 
+	 */
+	public static final String EXTRA_PRIORITY="priority";
+
+	/** Priority class for latency sensitive traffic (UI driven calls).
+	 * @see {@link #EXTRA_PRIORITY}
+	 * @since 1.1 
+	 */
+	public static final int PRIORITY_INTERACTIVE=0;
+	
+	/** Default priority class. 
+	 * @see {@link #EXTRA_PRIORITY}
+	 * @since 1.1 
+	 */
+	public static final int PRIORITY_NORMAL=1;
+	
+	/** Priority class for bulk traffic. This is the class of {@link #pushMe(Context, PublishListener, int, long)}.
+	 * @see {@link #EXTRA_PRIORITY}
+	 * @since 1.1 
+	 */
+	public static final int PRIORITY_BULK=2;
 	
 	/**
 	 * Listener of install process.
@@ -114,12 +143,30 @@ public interface RemoteAndroid
 	 * @param context 			The context
 	 * @param listener 			A listener to expose the evolution of the installation process.
 	 * @param flags 			Accept zero or {@link INSTALL_REPLACE_EXISTING} if you want to force the installation.
+	 * 							The APK is sent with the priority class {@link PRIORITY_BULK}.
 	 * @param timeout			The timeout in milliseconds for a user answer to a question.
 	 * @throws IOException		It something happens.
 	 * @throws RemoteException	If the connection to Droid2Droid is broken.
 	 * @since 1.0 
 	 */
 	public abstract void pushMe(Context context,PublishListener listener,int flags,long timeout) throws IOException,RemoteException;
+
+	/**
+	 * Install current APK in remote Android&#8482;, and invoke the listener in an executor.
+	 * 
+	 * @param context 			The context
+	 * @param listener 			A listener to expose the evolution of the installation process.
+	 * @param flags 			See {@link #pushMe(Context, PublishListener, int, long)}.
+	 * @param timeout			The timeout in milliseconds for a user answer to a question.
+	 * @param executor			The executor to invoke the listener. Use {@link CallbackExecutors#DIRECT}
+	 * 							to invoke the listener in the thread which deliver the events.
+	 * @throws IOException		It something happens.
+	 * @throws RemoteException	If the connection to Droid2Droid is broken.
+	 * @see {@link CallbackExecutors#wrap(PublishListener, Executor)}
+	 * @see {@link RemoteAndroidCompat#pushMe(RemoteAndroid, Context, PublishListener, int, long, Executor)}
+	 * @since 1.1 
+	 */
+	public abstract void pushMe(Context context,PublishListener listener,int flags,long timeout,Executor executor) throws IOException,RemoteException;
 	
 	/**
 	 * Set the maximum time out for invoke a remote method before declare it's out.
@@ -129,10 +176,44 @@ public interface RemoteAndroid
 	 */
 	public abstract void setExecuteTimeout(long bindTimeout);
 
+	/**
+	 * Adapt the timeout of the remote methods to the round trip time of the link.
+	 * The effective timeout is <code>floor + RTO</code>, never more than the timeout 
+	 * set with {@link #setExecuteTimeout(long)}.
+	 * 
+	 * @param floor The minimum time for the remote service in milliseconds. Zero to disable.
+	 * @see {@link LinkQuality#getRto()}
+	 * @see {@link RemoteAndroidCompat#setAdaptiveExecuteTimeout(RemoteAndroid, long)}
+	 * @since 1.1 
+	 */
+	public abstract void setAdaptiveExecuteTimeout(long floor);
+
+	/**
+	 * Set the interval of the heartbeats, sent when the connection is idle.
+	 * 
+	 * @param interval The interval in milliseconds. Zero to disable the heartbeats.
+	 * @see {@link RemoteAndroidCompat#setHeartbeatInterval(RemoteAndroid, long)}
+	 * @since 1.1 
+	 */
+	public abstract void setHeartbeatInterval(long interval);
+
+	/**
+	 * Return the current quality of the link, measured with the heartbeats and the calls.
+	 * This method doesn't use the network.
+	 * 
+	 * @return The quality.
+	 * @see {@link RemoteAndroidCompat#getLinkQuality(RemoteAndroid)}
+	 * @since 1.1 
+	 */
+	public abstract LinkQuality getLinkQuality();
+
 	/**
 	 * Bind a service in remote Android&#8482; with Droid2Droid activated.
+	 * The intent may have a priority class for all the calls of this binding, in {@link #EXTRA_PRIORITY}
+	 * ({@link #PRIORITY_NORMAL} if not specified).
 	 * 
 	 * @see android.content.Context#bindService(Intent, ServiceConnection, int)
+	 * @see {@link #EXTRA_PRIORITY}
 	 * @since 1.0 
 	 */
     public abstract boolean bindService(Intent service, ServiceConnection conn, int flags);
@@ -145,6 +226,29 @@ public interface RemoteAndroid
      */
     public abstract boolean unbindService(ServiceConnection conn);
     
+    /**
+     * Keep the remote services warm after unbind.
+     * 
+     * The remote Android&#8482; keep an unbinded service alive during this period, 
+     * for the same component and the same caller. A new {@link #bindService(Intent, ServiceConnection, int)} 
+     * in this period reattach the same instance.
+     * 
+     * @param gracePeriod The period in milliseconds. Zero to stop the service immediately.
+     * @see {@link RemoteAndroidCompat#setServiceGracePeriod(RemoteAndroid, long)}
+	 * @since 1.1 
+     */
+    public abstract void setServiceGracePeriod(long gracePeriod);
+    
+    /**
+     * Return the statistics of the warm services in remote Android&#8482;, for this caller.
+     * 
+     * @return The statistics.
+     * @throws RemoteException	If the connection to Droid2Droid is broken.
+     * @see {@link RemoteAndroidCompat#getServiceReuseStats(RemoteAndroid)}
+	 * @since 1.1 
+     */
+    public abstract ServiceReuseStats getServiceReuseStats() throws RemoteException;
+    
     /**
      * Close the connection to remote Android&#8482;.
 	 * @since 1.0 
@@ -154,11 +258,24 @@ public interface RemoteAndroid
     /**
      * Return informations from remote Android&#8482;.
      * 
+     * Since 1.1, the informations are a snapshot kept in the process, and refreshed only 
+     * when the remote Android&#8482; notify a change. The snapshot must not be modified.
+     * 
      * @return informations.
 	 * @since 1.0 
      */
     public RemoteAndroidInfo getInfos();
 
+    /**
+     * Return the version of the informations returned by {@link #getInfos()}.
+     * The version is incremented at each new snapshot. This method never use the network.
+     * 
+     * @return The version.
+     * @see {@link RemoteAndroidCompat#getInfosVersion(RemoteAndroid)}
+	 * @since 1.1 
+     */
+    public long getInfosVersion();
+
     /**
      * Check if the connection is closed.
      * @return <code>true</code> if the connection is closed.
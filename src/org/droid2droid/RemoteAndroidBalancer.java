@@ -0,0 +1,380 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.droid2droid.ListRemoteAndroidInfo.DiscoverListener;
+import org.droid2droid.RemoteAndroidGroup.Call;
+
+import android.content.Intent;
+import android.os.IBinder;
+
+/**
+ * Spread the calls of a remote service between equivalent remote Androids&#8482;.
+ *
+ * All the peers with the requested features are binded. For each call, two peers are
+ * selected randomly and the call is sent to the peer with the less outstanding requests,
+ * weighted by the observed latency (power of two choices).
+ * If the connection of a peer is closed, the peer is removed and the call is sent to another one.
+ * A removed peer is binded again when it is discovered again.
+ * <pre>
+ * RemoteAndroidBalancer balancer=manager.newBalancer(RemoteAndroidInfo.FEATURE_CAMERA,
+ *   new Intent("org.acme.CAMERA"), Context.BIND_AUTO_CREATE, 5000);
+ * ListRemoteAndroidInfo list=Droid2DroidManager.newDiscoveredAndroid(context, balancer);
+ * ...
+ * Bitmap bitmap=balancer.call(new Call&lt;Bitmap&gt;() { ... });
+ * </pre>
+ * The method {@link #call(Call)} wait the answer, and must not be invoked in the main thread.
+ *
+ * @see {@link Droid2DroidManager#newBalancer(long, Intent, int, long)}
+ *
+ * @since 1.1
+ */
+public final class RemoteAndroidBalancer implements DiscoverListener
+{
+	/** Weight of the last latency in the moving average. */
+	private static final double ALPHA=0.3;
+
+	private static final class Candidate
+	{
+		final BoundPeer mPeer;
+		final AtomicInteger mInFlight=new AtomicInteger();
+		// Moving average of latency, in nanoseconds
+		volatile double mLatency;
+
+		Candidate(BoundPeer peer)
+		{
+			mPeer=peer;
+		}
+
+		double score()
+		{
+			final double latency=mLatency;
+			return (mInFlight.get()+1)*((latency==0) ? 1 : latency);
+		}
+
+		synchronized void sample(long latency)
+		{
+			mLatency=(mLatency==0) ? latency : ALPHA*latency+(1-ALPHA)*mLatency;
+		}
+	}
+
+	private final Droid2DroidManager mManager;
+	private final long mFeatures;
+	private final Intent mService;
+	private final int mFlags;
+	private final long mTimeout;
+	private final Random mRandom=new Random();
+	private final List<Candidate> mCandidates=new ArrayList<Candidate>();
+	private boolean mClosed;
+
+	/*package*/ RemoteAndroidBalancer(Droid2DroidManager manager,long features,Intent service,int flags,long timeout)
+	{
+		mManager=manager;
+		mFeatures=features;
+		mService=service;
+		mFlags=flags;
+		mTimeout=timeout;
+	}
+
+	/**
+	 * Add a peer if it have the features. The remote service is binded.
+	 * A peer already added, but with a lost connection, is binded again.
+	 *
+	 * @param info The peer.
+	 * @return <code>true</code> if the peer is added.
+	 * @since 1.1
+	 */
+	public boolean add(RemoteAndroidInfo info)
+	{
+		if ((info.getFeature() & mFeatures)!=mFeatures)
+			return false;
+		final BoundPeer peer;
+		BoundPeer lost=null;
+		synchronized (this)
+		{
+			if (mClosed)
+				return false;
+			final int i=indexOf(info.getUuid());
+			if (i>=0)
+			{
+				if (!mCandidates.get(i).mPeer.isLost())
+					return false;
+				lost=mCandidates.remove(i).mPeer;
+			}
+			peer=new BoundPeer(info,mService,mFlags,mTimeout);
+			mCandidates.add(new Candidate(peer));
+			notifyAll();
+		}
+		if (lost!=null)
+			lost.close();
+		if (!peer.bind(mManager))
+		{
+			remove(peer);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Remove a peer and close the connection.
+	 *
+	 * @param uuid The peer.
+	 * @since 1.1
+	 */
+	public void remove(UUID uuid)
+	{
+		final Candidate candidate;
+		synchronized (this)
+		{
+			final int i=indexOf(uuid);
+			if (i<0)
+				return;
+			candidate=mCandidates.remove(i);
+		}
+		candidate.mPeer.close();
+	}
+
+	// Remove this peer, not a new peer with the same uuid
+	private void remove(BoundPeer peer)
+	{
+		synchronized (this)
+		{
+			for (int i=0;i<mCandidates.size();++i)
+			{
+				if (mCandidates.get(i).mPeer==peer)
+				{
+					mCandidates.remove(i);
+					break;
+				}
+			}
+		}
+		peer.close();
+	}
+
+	/**
+	 * Return the peers ready to receive calls.
+	 *
+	 * @return The peers.
+	 * @since 1.1
+	 */
+	public List<RemoteAndroidInfo> getAvailable()
+	{
+		final List<RemoteAndroidInfo> available=new ArrayList<RemoteAndroidInfo>();
+		synchronized (this)
+		{
+			for (Candidate candidate:mCandidates)
+			{
+				if (candidate.mPeer.isAlive())
+					available.add(candidate.mPeer.mInfo);
+			}
+		}
+		return available;
+	}
+
+	/**
+	 * Invoke the remote service in the best peer.
+	 *
+	 * If the connection is closed during the call, the call is sent to another peer.
+	 * Others errors are not retried. If no peer is ready, the call wait a peer up to
+	 * the timeout of the balancer.
+	 *
+	 * @param call The call.
+	 * @return The result.
+	 * @throws IllegalStateException If no peer is available after the timeout.
+	 * @throws Exception If the call fail.
+	 * @since 1.1
+	 */
+	public <T> T call(Call<T> call) throws Exception
+	{
+		final long deadline=System.currentTimeMillis()+mTimeout;
+		for (;;)
+		{
+			final Candidate candidate=choose();
+			if (candidate==null)
+			{
+				awaitPeer(deadline);
+				continue;
+			}
+			final IBinder binder=candidate.mPeer.getBinder();
+			if (binder==null)
+			{
+				remove(candidate.mPeer);
+				continue;
+			}
+			candidate.mInFlight.incrementAndGet();
+			final long start=System.nanoTime();
+			try
+			{
+				final T result=call.call(candidate.mPeer.mInfo,binder);
+				candidate.sample(System.nanoTime()-start);
+				return result;
+			}
+			catch (Exception e)
+			{
+				if (candidate.mPeer.isAlive())
+				{
+					candidate.sample(System.nanoTime()-start);
+					throw e;
+				}
+				// Fail over
+				remove(candidate.mPeer);
+			}
+			finally
+			{
+				candidate.mInFlight.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Close all the connections.
+	 *
+	 * @since 1.1
+	 */
+	public void close()
+	{
+		final Candidate[] candidates;
+		synchronized (this)
+		{
+			mClosed=true;
+			candidates=mCandidates.toArray(new Candidate[mCandidates.size()]);
+			mCandidates.clear();
+			notifyAll();
+		}
+		for (Candidate candidate:candidates)
+			candidate.mPeer.close();
+	}
+
+	/** @hide */
+	@Override
+	public void onDiscoverStart()
+	{
+	}
+
+	/** @hide */
+	@Override
+	public void onDiscoverStop()
+	{
+	}
+
+	/** Add the discovered peers with the features.
+	 * @hide
+	 */
+	@Override
+	public void onDiscover(RemoteAndroidInfo remoteAndroidInfo, boolean update)
+	{
+		add(remoteAndroidInfo);
+	}
+
+	// Wait the end of a binding in progress, or a new peer
+	private void awaitPeer(long deadline) throws InterruptedException
+	{
+		final long remaining=deadline-System.currentTimeMillis();
+		BoundPeer pending=null;
+		synchronized (this)
+		{
+			if (mClosed || remaining<=0)
+				throw new IllegalStateException("No peer available");
+			for (Candidate candidate:mCandidates)
+			{
+				if (!candidate.mPeer.isLost())
+				{
+					pending=candidate.mPeer;
+					break;
+				}
+			}
+			if (pending==null)
+			{
+				wait(remaining);
+				return;
+			}
+		}
+		pending.await(remaining);
+	}
+
+	// Power of two choices between the alive peers. The lost peers are removed.
+	private Candidate choose()
+	{
+		final List<BoundPeer> lost=new ArrayList<BoundPeer>();
+		try
+		{
+			return choose(lost);
+		}
+		finally
+		{
+			for (BoundPeer peer:lost)
+				peer.close();
+		}
+	}
+
+	private synchronized Candidate choose(List<BoundPeer> lost)
+	{
+		for (int i=mCandidates.size()-1;i>=0;--i)
+		{
+			if (mCandidates.get(i).mPeer.isLost())
+				lost.add(mCandidates.remove(i).mPeer);
+		}
+		Candidate first=null;
+		Candidate second=null;
+		int alive=0;
+		for (Candidate candidate:mCandidates)
+		{
+			if (!candidate.mPeer.isAlive())
+				continue;
+			// Reservoir sampling of two candidates
+			++alive;
+			if (alive==1)
+				first=candidate;
+			else if (alive==2)
+				second=candidate;
+			else
+			{
+				final int r=mRandom.nextInt(alive);
+				if (r==0)
+					first=candidate;
+				else if (r==1)
+					second=candidate;
+			}
+		}
+		if (second==null)
+			return first;
+		return (second.score()<first.score()) ? second : first;
+	}
+
+	private int indexOf(UUID uuid)
+	{
+		for (int i=0;i<mCandidates.size();++i)
+		{
+			if (mCandidates.get(i).mPeer.mInfo.getUuid().equals(uuid))
+				return i;
+		}
+		return -1;
+	}
+}
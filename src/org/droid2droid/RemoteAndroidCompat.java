@@ -0,0 +1,240 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import org.droid2droid.ListRemoteAndroidInfo.DiscoverListener;
+import org.droid2droid.RemoteAndroid.PublishListener;
+
+import android.content.Context;
+import android.os.RemoteException;
+
+/**
+ * Invoke the methods added in 1.1, with an older Droid2Droid application.
+ *
+ * The implementations of {@link RemoteAndroid}, {@link ListRemoteAndroidInfo} and
+ * {@link Droid2DroidManager} are given by the installed Droid2Droid application.
+ * With a version 1.0, the methods added in 1.1 throw {@link AbstractMethodError}.
+ * These methods detect the missing implementation, and use the nearest 1.0 behavior.
+ * <pre>
+ * if (!RemoteAndroidCompat.setHeartbeatInterval(remote, 5000))
+ *   ... // No link quality with this version
+ * </pre>
+ *
+ * @since 1.1
+ */
+public final class RemoteAndroidCompat
+{
+	private RemoteAndroidCompat()
+	{
+	}
+
+	/**
+	 * Invoke {@link RemoteAndroid#pushMe(Context, PublishListener, int, long, Executor)},
+	 * or wrap the listener with a 1.0 implementation.
+	 *
+	 * @since 1.1
+	 */
+	public static void pushMe(RemoteAndroid remote,Context context,PublishListener listener,int flags,long timeout,Executor executor)
+		throws IOException,RemoteException
+	{
+		try
+		{
+			remote.pushMe(context,listener,flags,timeout,executor);
+		}
+		catch (AbstractMethodError e)
+		{
+			remote.pushMe(context,CallbackExecutors.wrap(listener,executor),flags,timeout);
+		}
+	}
+
+	/**
+	 * Invoke {@link ListRemoteAndroidInfo#setListener(DiscoverListener, Executor)},
+	 * or wrap the listener with a 1.0 implementation.
+	 *
+	 * @since 1.1
+	 */
+	public static void setListener(ListRemoteAndroidInfo list,DiscoverListener listener,Executor executor)
+	{
+		try
+		{
+			list.setListener(listener,executor);
+		}
+		catch (AbstractMethodError e)
+		{
+			list.setListener(CallbackExecutors.wrap(listener,executor));
+		}
+	}
+
+	/**
+	 * Invoke {@link RemoteAndroid#setServiceGracePeriod(long)}.
+	 *
+	 * @return <code>false</code> if the services can't be kept warm with this version.
+	 * @since 1.1
+	 */
+	public static boolean setServiceGracePeriod(RemoteAndroid remote,long gracePeriod)
+	{
+		try
+		{
+			remote.setServiceGracePeriod(gracePeriod);
+			return true;
+		}
+		catch (AbstractMethodError e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Invoke {@link RemoteAndroid#getServiceReuseStats()}.
+	 *
+	 * @return The statistics, or <code>null</code> with a 1.0 implementation.
+	 * @since 1.1
+	 */
+	public static ServiceReuseStats getServiceReuseStats(RemoteAndroid remote) throws RemoteException
+	{
+		try
+		{
+			return remote.getServiceReuseStats();
+		}
+		catch (AbstractMethodError e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Invoke {@link RemoteAndroid#setAdaptiveExecuteTimeout(long)}.
+	 *
+	 * @return <code>false</code> if the timeout stay fixed with this version.
+	 * @since 1.1
+	 */
+	public static boolean setAdaptiveExecuteTimeout(RemoteAndroid remote,long floor)
+	{
+		try
+		{
+			remote.setAdaptiveExecuteTimeout(floor);
+			return true;
+		}
+		catch (AbstractMethodError e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Invoke {@link RemoteAndroid#setHeartbeatInterval(long)}.
+	 *
+	 * @return <code>false</code> if there are no heartbeats with this version.
+	 * @since 1.1
+	 */
+	public static boolean setHeartbeatInterval(RemoteAndroid remote,long interval)
+	{
+		try
+		{
+			remote.setHeartbeatInterval(interval);
+			return true;
+		}
+		catch (AbstractMethodError e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Invoke {@link RemoteAndroid#getLinkQuality()}.
+	 *
+	 * @return The quality, or <code>null</code> with a 1.0 implementation.
+	 * @since 1.1
+	 */
+	public static LinkQuality getLinkQuality(RemoteAndroid remote)
+	{
+		try
+		{
+			return remote.getLinkQuality();
+		}
+		catch (AbstractMethodError e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Invoke {@link RemoteAndroid#getInfosVersion()}.
+	 *
+	 * @return The version, or <code>-1</code> with a 1.0 implementation
+	 * (the informations are read each time).
+	 * @since 1.1
+	 */
+	public static long getInfosVersion(RemoteAndroid remote)
+	{
+		try
+		{
+			return remote.getInfosVersion();
+		}
+		catch (AbstractMethodError e)
+		{
+			return -1;
+		}
+	}
+
+	/**
+	 * Invoke {@link Droid2DroidManager#getInfosVersion()}.
+	 *
+	 * @return The version, or <code>-1</code> with a 1.0 implementation
+	 * (the changes of the informations are not notified).
+	 * @since 1.1
+	 */
+	public static long getInfosVersion(Droid2DroidManager manager)
+	{
+		try
+		{
+			return manager.getInfosVersion();
+		}
+		catch (AbstractMethodError e)
+		{
+			return -1;
+		}
+	}
+
+	/**
+	 * Invoke {@link Droid2DroidManager#createConnectPayload()}, or create
+	 * the payload from the local informations, without session ticket.
+	 *
+	 * @since 1.1
+	 */
+	public static ConnectPayload createConnectPayload(Droid2DroidManager manager)
+	{
+		try
+		{
+			return manager.createConnectPayload();
+		}
+		catch (AbstractMethodError e)
+		{
+			return ConnectPayload.create(manager.getInfos(),null);
+		}
+	}
+}
@@ -0,0 +1,281 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import android.content.Intent;
+import android.os.IBinder;
+
+/**
+ * The same remote service, binded in a group of remote Androids&#8482;.
+ *
+ * The binds are started concurrently, and a method can be invoked on all
+ * the peers with a bounded parallelism. The result contains the values of the
+ * peers answered in time, and the errors of the others.
+ * <pre>
+ * RemoteAndroidGroup group=manager.newGroup(list, new Intent("org.acme.INFO"), Context.BIND_AUTO_CREATE, 2000);
+ * group.connect(5000);
+ * GroupResult&lt;String&gt; result=group.invoke(executor, 8, new Call&lt;String&gt;()
+ * {
+ *   public String call(RemoteAndroidInfo info, IBinder binder) throws Exception
+ *   {
+ *     return IInfo.Stub.asInterface(binder).getModel();
+ *   }
+ * });
+ * group.close();
+ * </pre>
+ * The methods {@link #connect(long)} and {@link #invoke(Executor, int, Call)} wait the
+ * answers, and must not be invoked in the main thread.
+ *
+ * @see {@link Droid2DroidManager#newGroup(Collection, Intent, int, long)}
+ *
+ * @since 1.1
+ */
+public final class RemoteAndroidGroup
+{
+	/**
+	 * The method to invoke on each peer.
+	 *
+	 * @since 1.1
+	 */
+	public interface Call<T>
+	{
+		/**
+		 * Invoke the remote service.
+		 *
+		 * @param info The peer.
+		 * @param binder The binder of the remote service. Use <code>Stub.asInterface()</code>.
+		 * @return The result.
+		 * @throws Exception If something happens.
+		 * @since 1.1
+		 */
+		T call(RemoteAndroidInfo info,IBinder binder) throws Exception;
+	}
+
+	/**
+	 * The partial results of an invocation.
+	 *
+	 * @since 1.1
+	 */
+	public static final class GroupResult<T>
+	{
+		private final Map<RemoteAndroidInfo,T> mValues=new LinkedHashMap<RemoteAndroidInfo,T>();
+		private final Map<RemoteAndroidInfo,Throwable> mErrors=new LinkedHashMap<RemoteAndroidInfo,Throwable>();
+
+		/** The results of the peers answered in time.
+		 * @since 1.1
+		 */
+		public synchronized Map<RemoteAndroidInfo,T> getValues()
+		{
+			return Collections.unmodifiableMap(new LinkedHashMap<RemoteAndroidInfo,T>(mValues));
+		}
+
+		/** The errors. A {@link TimeoutException} if the peer doesn't answer in time.
+		 * @since 1.1
+		 */
+		public synchronized Map<RemoteAndroidInfo,Throwable> getErrors()
+		{
+			return Collections.unmodifiableMap(new LinkedHashMap<RemoteAndroidInfo,Throwable>(mErrors));
+		}
+
+		/** <code>true</code> if all the peers have answered.
+		 * @since 1.1
+		 */
+		public synchronized boolean isComplete()
+		{
+			return mErrors.isEmpty();
+		}
+
+		synchronized void value(RemoteAndroidInfo info,T value)
+		{
+			if (!mErrors.containsKey(info))
+				mValues.put(info,value);
+		}
+
+		synchronized void error(RemoteAndroidInfo info,Throwable e)
+		{
+			if (!mValues.containsKey(info))
+				mErrors.put(info,e);
+		}
+
+		synchronized boolean isDone(RemoteAndroidInfo info)
+		{
+			return mValues.containsKey(info) || mErrors.containsKey(info);
+		}
+	}
+
+	private final Droid2DroidManager mManager;
+	private final long mTimeout;
+	private final List<BoundPeer> mPeers;
+
+	/*package*/ RemoteAndroidGroup(Droid2DroidManager manager,Collection<RemoteAndroidInfo> peers,Intent service,int flags,long timeout)
+	{
+		mManager=manager;
+		mTimeout=timeout;
+		mPeers=new ArrayList<BoundPeer>(peers.size());
+		for (RemoteAndroidInfo info:peers)
+			mPeers.add(new BoundPeer(info,service,flags,timeout));
+	}
+
+	/**
+	 * Bind all the peers concurrently, and wait.
+	 *
+	 * @param timeout The maximum time to wait in milliseconds.
+	 * @return The number of peers with the remote service binded.
+	 * @throws InterruptedException If the thread is interrupted.
+	 * @since 1.1
+	 */
+	public int connect(long timeout) throws InterruptedException
+	{
+		// Bind only the peers without binding in progress
+		for (BoundPeer peer:mPeers)
+			peer.bind(mManager);
+		final long deadline=System.currentTimeMillis()+timeout;
+		int connected=0;
+		for (BoundPeer peer:mPeers)
+		{
+			if (peer.await(Math.max(0,deadline-System.currentTimeMillis())))
+				++connected;
+		}
+		return connected;
+	}
+
+	/**
+	 * Return the peers with the remote service binded.
+	 *
+	 * @return The peers.
+	 * @since 1.1
+	 */
+	public List<RemoteAndroidInfo> getConnected()
+	{
+		final List<RemoteAndroidInfo> connected=new ArrayList<RemoteAndroidInfo>(mPeers.size());
+		for (BoundPeer peer:mPeers)
+		{
+			if (peer.getBinder()!=null)
+				connected.add(peer.mInfo);
+		}
+		return connected;
+	}
+
+	/**
+	 * Invoke a method on all the peers, and wait the answers.
+	 *
+	 * Each call is limited by the timeout of the group (see {@link RemoteAndroid#setExecuteTimeout(long)}).
+	 * The peers not connected are in the errors.
+	 *
+	 * @param executor The executor for the calls.
+	 * @param parallelism The maximum number of concurrent calls.
+	 * @param call The method to invoke.
+	 * @return The values and errors for each peer.
+	 * @throws InterruptedException If the thread is interrupted.
+	 * @throws IllegalArgumentException If the parallelism is not positive.
+	 * @since 1.1
+	 */
+	public <T> GroupResult<T> invoke(Executor executor,int parallelism,final Call<T> call) throws InterruptedException
+	{
+		if (parallelism<=0)
+			throw new IllegalArgumentException("parallelism must be positive");
+		final GroupResult<T> result=new GroupResult<T>();
+		final Semaphore permits=new Semaphore(parallelism);
+		final CountDownLatch done=new CountDownLatch(mPeers.size());
+		final List<BoundPeer> started=new ArrayList<BoundPeer>(mPeers.size());
+		// The deadline if all the calls use the full timeout
+		final long deadline=System.currentTimeMillis()
+				+mTimeout*((mPeers.size()+parallelism-1)/parallelism);
+		for (final BoundPeer peer:mPeers)
+		{
+			final IBinder binder=peer.getBinder();
+			if (binder==null)
+			{
+				result.error(peer.mInfo,(peer.getError()!=null) ? peer.getError() : new IllegalStateException("Not connected"));
+				done.countDown();
+				continue;
+			}
+			if (!permits.tryAcquire(Math.max(0,deadline-System.currentTimeMillis()),TimeUnit.MILLISECONDS))
+				break;
+			final Runnable task=new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						result.value(peer.mInfo,call.call(peer.mInfo,binder));
+					}
+					catch (Throwable e)
+					{
+						result.error(peer.mInfo,e);
+					}
+					finally
+					{
+						permits.release();
+						done.countDown();
+					}
+				}
+			};
+			try
+			{
+				started.add(peer);
+				executor.execute(task);
+			}
+			catch (RejectedExecutionException e)
+			{
+				started.remove(peer);
+				result.error(peer.mInfo,e);
+				permits.release();
+				done.countDown();
+			}
+		}
+		done.await(Math.max(0,deadline-System.currentTimeMillis()),TimeUnit.MILLISECONDS);
+		for (BoundPeer peer:mPeers)
+		{
+			if (!result.isDone(peer.mInfo))
+				result.error(peer.mInfo,new TimeoutException(started.contains(peer) ? "No answer" : "Not started"));
+		}
+		return result;
+	}
+
+	/**
+	 * Unbind the remote services and close the connections.
+	 *
+	 * @since 1.1
+	 */
+	public void close()
+	{
+		for (BoundPeer peer:mPeers)
+			peer.close();
+	}
+}
@@ -0,0 +1,377 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import android.content.Intent;
+import android.os.Parcel;
+import android.os.SystemClock;
+
+/**
+ * A cache of the results of idempotent remote methods.
+ *
+ * Wrap the proxy of a remote service, and register the methods with
+ * rarely changed results. The results are kept during a time to live,
+ * in a LRU with a maximum size. The remote service can invalidate the
+ * results with the broadcast {@link Droid2DroidManager#ACTION_INVALIDATE_CACHE}.
+ *
+ * The immutable results (primitives, {@link String}, {@link UUID}, enums) are shared.
+ * The arrays of these types are cloned, and the other results are copied with a {@link Parcel}
+ * for each call, so the caller can modify them. The results which can not be written
+ * in a {@link Parcel} are never cached.
+ * The methods with array parameters are never cached: the AIDL <code>out</code> and
+ * <code>inout</code> arrays are filled by the remote service, not by the cache.
+ * <pre>
+ * RemoteCallCache cache=new RemoteCallCache(info.getUuid(), 64);
+ * cache.register("getConfiguration", 60000);
+ * IConfig config=cache.wrap(IConfig.class, IConfig.Stub.asInterface(binder));
+ * </pre>
+ *
+ * @since 1.1
+ */
+public final class RemoteCallCache
+{
+	/**
+	 * Mark a method of an interface as cachable.
+	 * Ignored for the methods with array parameters.
+	 *
+	 * @since 1.1
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	public @interface Cached
+	{
+		/** The time to live in milliseconds. */
+		long ttl();
+	}
+
+	private static final Object NULL=new Object();
+
+	private static final Class<?>[] IMMUTABLES=
+	{
+		String.class,UUID.class,Boolean.class,Character.class,Byte.class,Short.class,
+		Integer.class,Long.class,Float.class,Double.class
+	};
+
+	private static final class Key
+	{
+		final String mMethod;
+		final Object[] mArgs;
+		final int mHash;
+
+		Key(String method,Object[] args)
+		{
+			mMethod=method;
+			mArgs=(args==null) ? new Object[0] : args.clone();
+			mHash=method.hashCode()*31+Arrays.deepHashCode(mArgs);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return mHash;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Key))
+				return false;
+			final Key other=(Key)o;
+			return mHash==other.mHash && mMethod.equals(other.mMethod) && Arrays.deepEquals(mArgs,other.mArgs);
+		}
+	}
+
+	private static final class Result
+	{
+		final Object mValue;
+		final long mExpire;
+		// The value must be copied for each call
+		final boolean mCopy;
+
+		Result(Object value,long expire,boolean copy)
+		{
+			mValue=value;
+			mExpire=expire;
+			mCopy=copy;
+		}
+	}
+
+	private final UUID mPeer;
+	private final Map<String,Long> mTtls=new HashMap<String,Long>();
+	private final LinkedHashMap<Key,Result> mEntries;
+	private long mHits;
+	private long mMisses;
+	// Incremented at each invalidation, to ignore the results of the calls started before
+	private long mGeneration;
+
+	/**
+	 * @param peer The remote Android&#8482; of the service. May be <code>null</code> to ignore the invalidations.
+	 * @param maxEntries The maximum number of results.
+	 * @since 1.1
+	 */
+	public RemoteCallCache(UUID peer,final int maxEntries)
+	{
+		mPeer=peer;
+		mEntries=new LinkedHashMap<Key,Result>(16,0.75f,true)
+		{
+			private static final long serialVersionUID=1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key,Result> eldest)
+			{
+				return size()>maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Register a cachable method, for all the signatures with this name.
+	 *
+	 * @param method The name of the method.
+	 * @param ttl The time to live in milliseconds.
+	 * @since 1.1
+	 */
+	public synchronized void register(String method,long ttl)
+	{
+		mTtls.put(method,ttl);
+	}
+
+	/**
+	 * Wrap a remote service.
+	 * The methods registered or annotated with {@link Cached} use the cache.
+	 *
+	 * @param iface The interface of the service.
+	 * @param target The proxy of the service (<code>Stub.asInterface(binder)</code>).
+	 * @return The proxy with cache.
+	 * @since 1.1
+	 */
+	public <T> T wrap(Class<T> iface,final T target)
+	{
+		final ClassLoader loader=iface.getClassLoader();
+		return iface.cast(Proxy.newProxyInstance(iface.getClassLoader(),new Class<?>[]{iface},new InvocationHandler()
+		{
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+			{
+				final long ttl=ttl(method);
+				if (ttl<=0)
+					return call(target,method,args);
+				final Key key=new Key(method.getName(),args);
+				final long now=SystemClock.elapsedRealtime();
+				final long generation;
+				final Result entry;
+				synchronized (RemoteCallCache.this)
+				{
+					generation=mGeneration;
+					entry=mEntries.get(key);
+					if (entry!=null && entry.mExpire>now)
+						++mHits;
+					else
+						++mMisses;
+				}
+				if (entry!=null && entry.mExpire>now)
+				{
+					if (entry.mValue==NULL)
+						return null;
+					return (entry.mCopy) ? copy(entry.mValue,loader) : entry.mValue;
+				}
+				final Object value=call(target,method,args);
+				Object cached=(value==null) ? NULL : value;
+				final boolean mutable=(value!=null && !isImmutable(value.getClass()));
+				if (mutable)
+				{
+					try
+					{
+						// Keep a private copy, the caller can modify the value
+						cached=copy(value,loader);
+					}
+					catch (RuntimeException e)
+					{
+						// Not parcelable: never cached
+						return value;
+					}
+				}
+				synchronized (RemoteCallCache.this)
+				{
+					if (generation==mGeneration)
+						mEntries.put(key,new Result(cached,now+ttl,mutable));
+				}
+				return value;
+			}
+		}));
+	}
+
+	/**
+	 * Invalidate the results of a method.
+	 *
+	 * @param method The name of the method.
+	 * @since 1.1
+	 */
+	public synchronized void invalidate(String method)
+	{
+		++mGeneration;
+		for (Iterator<Key> i=mEntries.keySet().iterator();i.hasNext();)
+		{
+			if (i.next().mMethod.equals(method))
+				i.remove();
+		}
+	}
+
+	/**
+	 * Invalidate all the results.
+	 *
+	 * @since 1.1
+	 */
+	public synchronized void invalidateAll()
+	{
+		++mGeneration;
+		mEntries.clear();
+	}
+
+	/**
+	 * Apply an invalidation pushed by the remote Android&#8482;.
+	 * The receiver must be registered with {@link Droid2DroidManager#PERMISSION_CACHE_SEND}.
+	 *
+	 * @param intent The broadcast {@link Droid2DroidManager#ACTION_INVALIDATE_CACHE}.
+	 * @return <code>true</code> if the intent is for this cache.
+	 * @since 1.1
+	 */
+	public boolean onInvalidate(Intent intent)
+	{
+		if (mPeer==null || !Droid2DroidManager.ACTION_INVALIDATE_CACHE.equals(intent.getAction())
+				|| !mPeer.toString().equals(intent.getStringExtra(Droid2DroidManager.EXTRA_CACHE_PEER)))
+			return false;
+		final String[] methods=intent.getStringArrayExtra(Droid2DroidManager.EXTRA_CACHE_METHODS);
+		if (methods==null)
+			invalidateAll();
+		else
+		{
+			for (String method:methods)
+				invalidate(method);
+		}
+		return true;
+	}
+
+	/**
+	 * @return The number of calls served by the cache.
+	 * @since 1.1
+	 */
+	public synchronized long getHits()
+	{
+		return mHits;
+	}
+
+	/**
+	 * @return The number of calls sent to the remote service, for the cachable methods.
+	 * @since 1.1
+	 */
+	public synchronized long getMisses()
+	{
+		return mMisses;
+	}
+
+	private long ttl(Method method)
+	{
+		if (method.getReturnType()==Void.TYPE)
+			return 0;
+		// The out and inout arrays must be filled by the remote service
+		for (Class<?> type:method.getParameterTypes())
+		{
+			if (type.isArray())
+				return 0;
+		}
+		final Cached cached=method.getAnnotation(Cached.class);
+		if (cached!=null)
+			return cached.ttl();
+		synchronized (this)
+		{
+			final Long ttl=mTtls.get(method.getName());
+			return (ttl==null) ? 0 : ttl;
+		}
+	}
+
+	private static boolean isImmutable(Class<?> type)
+	{
+		if (type.isPrimitive() || type.isEnum())
+			return true;
+		for (Class<?> immutable:IMMUTABLES)
+		{
+			if (immutable==type)
+				return true;
+		}
+		return false;
+	}
+
+	private static Object copy(Object value,ClassLoader loader)
+	{
+		final Class<?> type=value.getClass();
+		if (type.isArray() && isImmutable(type.getComponentType()))
+		{
+			final int length=Array.getLength(value);
+			final Object copy=Array.newInstance(type.getComponentType(),length);
+			System.arraycopy(value,0,copy,0,length);
+			return copy;
+		}
+		// The same marshalling as the remote call
+		final Parcel parcel=Parcel.obtain();
+		try
+		{
+			parcel.writeValue(value);
+			parcel.setDataPosition(0);
+			return parcel.readValue(loader);
+		}
+		finally
+		{
+			parcel.recycle();
+		}
+	}
+
+	private static Object call(Object target,Method method,Object[] args) throws Throwable
+	{
+		try
+		{
+			return method.invoke(target,args);
+		}
+		catch (InvocationTargetException e)
+		{
+			throw e.getCause();
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Statistics of the warm services in a remote Android&#8482;.
+ *
+ * @see {@link RemoteAndroid#setServiceGracePeriod(long)}
+ * @see {@link RemoteAndroid#getServiceReuseStats()}
+ *
+ * @since 1.1
+ */
+public final class ServiceReuseStats implements Parcelable
+{
+	private final long mHits;
+	private final long mMisses;
+	private final long mEvictions;
+	private final int mWarm;
+
+	/**
+	 * @hide
+	 */
+	public ServiceReuseStats(long hits,long misses,long evictions,int warm)
+	{
+		mHits=hits;
+		mMisses=misses;
+		mEvictions=evictions;
+		mWarm=warm;
+	}
+
+	/** The number of binds reattached to a warm service.
+	 * @since 1.1
+	 */
+	public long getHits()
+	{
+		return mHits;
+	}
+
+	/** The number of binds with a new service.
+	 * @since 1.1
+	 */
+	public long getMisses()
+	{
+		return mMisses;
+	}
+
+	/** The number of warm services stopped before a rebind.
+	 * @since 1.1
+	 */
+	public long getEvictions()
+	{
+		return mEvictions;
+	}
+
+	/** The number of services currently warm.
+	 * @since 1.1
+	 */
+	public int getWarmCount()
+	{
+		return mWarm;
+	}
+
+	/** The ratio of binds reattached to a warm service, between 0 and 1.
+	 * @since 1.1
+	 */
+	public float getHitRate()
+	{
+		final long total=mHits+mMisses;
+		return (total==0) ? 0 : (float)mHits/total;
+	}
+
+	@Override
+	public int describeContents()
+	{
+		return 0;
+	}
+
+	@Override
+	public void writeToParcel(Parcel dest, int flags)
+	{
+		dest.writeLong(mHits);
+		dest.writeLong(mMisses);
+		dest.writeLong(mEvictions);
+		dest.writeInt(mWarm);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "hits="+mHits+" misses="+mMisses+" evictions="+mEvictions+" warm="+mWarm;
+	}
+
+	public static final Parcelable.Creator<ServiceReuseStats> CREATOR=new Parcelable.Creator<ServiceReuseStats>()
+	{
+		@Override
+		public ServiceReuseStats createFromParcel(Parcel source)
+		{
+			return new ServiceReuseStats(source.readLong(),source.readLong(),source.readLong(),source.readInt());
+		}
+
+		@Override
+		public ServiceReuseStats[] newArray(int size)
+		{
+			return new ServiceReuseStats[size];
+		}
+	};
+}
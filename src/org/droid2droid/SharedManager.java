@@ -0,0 +1,516 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.ServiceConnection;
+import android.nfc.NdefMessage;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * The process-wide manager, shared by all the clients of {@link Droid2DroidManager#bindManager(Context, ManagerListener)}.
+ *
+ * Each client receive its own {@link Client} instance.
+ * The real manager is closed when the last client is closed, even if its service is disconnected.
+ * When the service is disconnected, the same real manager is kept, and bind the clients again
+ * when the service come back.
+ * The discovery requests of all the clients are merged in only one discovery process.
+ *
+ * @hide
+ */
+/*package*/ final class SharedManager
+{
+	private static final Object sLock=new Object();
+
+	// Maximum age of the local informations, if the application don't send ACTION_INFOS_CHANGED
+	private static final long INFOS_MAX_AGE=1000;
+	private static final List<Client> sClients=new ArrayList<Client>();
+	// The manager with a connected service
+	private static Droid2DroidManager sManager;
+	// The real manager, connected or not, until the last client is closed
+	private static Droid2DroidManager sReal;
+	private static boolean sBinding;
+
+	// The current merged discovery
+	private static int sDiscoverFlags;
+	private static long sDiscoverDeadline;
+
+	private static Handler sHandler;
+
+	// The local informations, shared by all the clients
+	private static final InfoSnapshot sInfos=new InfoSnapshot();
+	private static Context sContext;
+	private static final BroadcastReceiver sInfosReceiver=new BroadcastReceiver()
+	{
+		@Override
+		public void onReceive(Context context, Intent intent)
+		{
+			sInfos.invalidate();
+		}
+	};
+	// The real discovery is stopped: no client discover anymore
+	private static final BroadcastReceiver sDiscoverReceiver=new BroadcastReceiver()
+	{
+		@Override
+		public void onReceive(Context context, Intent intent)
+		{
+			synchronized (sLock)
+			{
+				resetDiscoverLocked();
+			}
+		}
+	};
+	private static final InfoSnapshot.Loader sInfosLoader=new InfoSnapshot.Loader()
+	{
+		@Override
+		public RemoteAndroidInfo load()
+		{
+			return current().getInfos();
+		}
+	};
+
+	private static final Droid2DroidManager.ManagerListener sListener=new Droid2DroidManager.ManagerListener()
+	{
+		@Override
+		public void bind(Droid2DroidManager manager)
+		{
+			final Client[] clients;
+			Context context=null;
+			synchronized (sLock)
+			{
+				if (sReal!=null && sReal!=manager)
+				{
+					// Not the shared manager
+					clients=null;
+				}
+				else if (sClients.isEmpty())
+				{
+					// All clients are gone before the bind
+					sBinding=false;
+					clients=null;
+					context=detachLocked();
+				}
+				else
+				{
+					sBinding=false;
+					sReal=manager;
+					sManager=manager;
+					// A 1.0 application never notify the changes
+					sInfos.setMaxAge((RemoteAndroidCompat.getInfosVersion(manager)>=0) ? 0 : INFOS_MAX_AGE);
+					clients=sClients.toArray(new Client[sClients.size()]);
+				}
+			}
+			if (clients==null)
+			{
+				release(context);
+				manager.close();
+				return;
+			}
+			for (Client client:clients)
+				client.mListener.bind(client);
+		}
+
+		@Override
+		public void unbind(Droid2DroidManager manager)
+		{
+			final Client[] clients;
+			synchronized (sLock)
+			{
+				if (sManager!=manager)
+					return;
+				// Keep sReal, to close it or to use it again when the service come back
+				sManager=null;
+				sInfos.invalidate();
+				resetDiscoverLocked();
+				clients=sClients.toArray(new Client[sClients.size()]);
+			}
+			for (Client client:clients)
+				client.mListener.unbind(client);
+		}
+	};
+
+	private SharedManager()
+	{
+	}
+
+	/**
+	 * Add a client to the shared manager.
+	 *
+	 * @param factory The factory to create the real manager.
+	 * @param context The context.
+	 * @param listener The listener of the client.
+	 * @param executor The executor of the listener, or <code>null</code> for the UI thread.
+	 */
+	static void bind(Factories factory,Context context,Droid2DroidManager.ManagerListener listener,Executor executor)
+	{
+		final boolean direct=(executor==null || executor==CallbackExecutors.DIRECT);
+		final Client client=new Client(direct ? listener : CallbackExecutors.wrap(listener,executor));
+		final boolean bound;
+		final boolean create;
+		synchronized (sLock)
+		{
+			if (sHandler==null)
+				sHandler=new Handler(Looper.getMainLooper());
+			sClients.add(client);
+			bound=(sManager!=null);
+			// A disconnected real manager bind the clients when its service come back
+			create=(sReal==null && !sBinding);
+			if (create)
+			{
+				sBinding=true;
+				sContext=context.getApplicationContext();
+			}
+		}
+		if (bound && !direct)
+		{
+			// The wrapped listener is invoked asynchronously in the executor, without the UI thread
+			client.mListener.bind(client);
+		}
+		else if (bound)
+		{
+			// Keep the asynchronous contract of bindManager()
+			sHandler.post(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					synchronized (sLock)
+					{
+						if (client.mClosed || sManager==null)
+							return;
+					}
+					client.mListener.bind(client);
+				}
+			});
+		}
+		else if (create)
+		{
+			final Context appContext=context.getApplicationContext();
+			sInfos.invalidate();
+			appContext.registerReceiver(sInfosReceiver,new IntentFilter(Droid2DroidManager.ACTION_INFOS_CHANGED),
+				Droid2DroidManager.PERMISSION_INFOS_SEND,null);
+			appContext.registerReceiver(sDiscoverReceiver,new IntentFilter(Droid2DroidManager.ACTION_STOP_DISCOVER_ANDROID),
+				Droid2DroidManager.PERMISSION_DISCOVER_SEND,null);
+			factory.newManager(appContext,sListener);
+		}
+	}
+
+	// Must be called with sLock, when the real manager will be closed
+	private static Context detachLocked()
+	{
+		final Context context=sContext;
+		sContext=null;
+		return context;
+	}
+
+	// Unregister the receiver of the detached context
+	private static void release(Context context)
+	{
+		if (context!=null)
+		{
+			context.unregisterReceiver(sInfosReceiver);
+			context.unregisterReceiver(sDiscoverReceiver);
+		}
+	}
+
+	// Must be called with sLock
+	private static Droid2DroidManager manager()
+	{
+		if (sManager==null)
+			throw new IllegalStateException("Manager not bound");
+		return sManager;
+	}
+
+	// Read the manager, to invoke it without the lock
+	private static Droid2DroidManager current()
+	{
+		synchronized (sLock)
+		{
+			return manager();
+		}
+	}
+
+	// Must be called with sLock
+	private static void resetDiscoverLocked()
+	{
+		for (Client client:sClients)
+			client.mDiscovering=false;
+		sDiscoverFlags=0;
+		sDiscoverDeadline=0;
+	}
+
+	// Must be called with sLock. Return true if the merged discovery must be (re)started.
+	private static boolean mergeDiscover(long now)
+	{
+		int all=0;
+		int noFlags=Droid2DroidManager.FLAG_NO_BLUETOOTH|Droid2DroidManager.FLAG_NO_ETHERNET;
+		long deadline=0;
+		boolean active=false;
+		for (Client client:sClients)
+		{
+			if (!client.isDiscoveringLocked(now))
+				continue;
+			active=true;
+			// The radios are refused only if all the clients refuse them
+			all|=client.mDiscoverFlags & ~noFlags;
+			noFlags&=client.mDiscoverFlags;
+			deadline=Math.max(deadline,client.mDiscoverDeadline);
+		}
+		if (!active)
+			return false;
+		final int flags=all|noFlags;
+		// The merged state is reset when the real discovery stop
+		final boolean running=(sDiscoverDeadline>=Droid2DroidManager.DISCOVER_BEST_EFFORT || sDiscoverDeadline>now);
+		if (running && flags==sDiscoverFlags && deadline<=sDiscoverDeadline)
+			return false;
+		sDiscoverFlags=flags;
+		sDiscoverDeadline=deadline;
+		return true;
+	}
+
+	private static long toDelay(long deadline,long now)
+	{
+		if (deadline==Droid2DroidManager.DISCOVER_INFINITELY || deadline==Droid2DroidManager.DISCOVER_BEST_EFFORT)
+			return deadline;
+		return Math.max(0,deadline-now);
+	}
+
+	/**
+	 * The manager for one client.
+	 */
+	@TargetApi(9)
+	static final class Client extends Droid2DroidManager
+	{
+		final ManagerListener mListener;
+		boolean mClosed;
+		boolean mDiscovering;
+		int mDiscoverFlags;
+		long mDiscoverDeadline;
+
+		Client(ManagerListener listener)
+		{
+			mListener=listener;
+		}
+
+		// Must be called with sLock
+		boolean isDiscoveringLocked(long now)
+		{
+			if (!mDiscovering)
+				return false;
+			if (mDiscoverDeadline<Droid2DroidManager.DISCOVER_BEST_EFFORT && mDiscoverDeadline<=now)
+				mDiscovering=false;
+			return mDiscovering;
+		}
+
+		@Override
+		public int getVersion()
+		{
+			return current().getVersion();
+		}
+
+		@Override
+		public Context getContext()
+		{
+			return current().getContext();
+		}
+
+		@Override
+		public boolean bindRemoteAndroid(Intent service, ServiceConnection conn, int flags)
+		{
+			return current().bindRemoteAndroid(service, conn, flags);
+		}
+
+		/**
+		 * Start the discovery process, merged with the requests of the other clients.
+		 *
+		 * The flags {@link #FLAG_NO_BLUETOOTH} and {@link #FLAG_NO_ETHERNET} are applied only
+		 * if all the clients use them. The discovery run up to the longest delay.
+		 */
+		@Override
+		public void startDiscover(int flags, long timeToDiscover)
+		{
+			final Droid2DroidManager manager;
+			final int mergedFlags;
+			final long delay;
+			synchronized (sLock)
+			{
+				manager=manager();
+				final long now=SystemClock.elapsedRealtime();
+				mDiscovering=true;
+				mDiscoverFlags=flags;
+				mDiscoverDeadline=(timeToDiscover>=DISCOVER_BEST_EFFORT) ? timeToDiscover : now+timeToDiscover;
+				if (!mergeDiscover(now))
+					return;
+				mergedFlags=sDiscoverFlags;
+				delay=toDelay(sDiscoverDeadline,now);
+			}
+			manager.startDiscover(mergedFlags, delay);
+		}
+
+		/**
+		 * Cancel the discovery for this client. The discovery process is stopped
+		 * when no other client discover.
+		 */
+		@Override
+		public void cancelDiscover()
+		{
+			final Droid2DroidManager manager;
+			synchronized (sLock)
+			{
+				mDiscovering=false;
+				if (sManager==null)
+					return;
+				final long now=SystemClock.elapsedRealtime();
+				for (Client client:sClients)
+				{
+					if (client.isDiscoveringLocked(now))
+						return;
+				}
+				manager=sManager;
+				sDiscoverFlags=0;
+				sDiscoverDeadline=0;
+			}
+			manager.cancelDiscover();
+		}
+
+		@Override
+		public boolean isDiscovering()
+		{
+			final Droid2DroidManager manager;
+			synchronized (sLock)
+			{
+				if (!isDiscoveringLocked(SystemClock.elapsedRealtime()))
+					return false;
+				manager=manager();
+			}
+			return manager.isDiscovering();
+		}
+
+		/**
+		 * Return the snapshot of the local informations, shared by all the clients.
+		 * The snapshot is loaded again only after {@link #ACTION_INFOS_CHANGED}, or after
+		 * a short delay with a 1.0 Droid2Droid application.
+		 */
+		@Override
+		public RemoteAndroidInfo getInfos()
+		{
+			return sInfos.get(sInfosLoader);
+		}
+
+		@Override
+		public long getInfosVersion()
+		{
+			return sInfos.getVersion();
+		}
+
+		@Override
+		public ListRemoteAndroidInfo getBondedDevices()
+		{
+			return current().getBondedDevices();
+		}
+
+		@Override
+		@Deprecated
+		public void setLog(int type, boolean state)
+		{
+			current().setLog(type, state);
+		}
+
+		@Override
+		public NdefMessage createNdefMessage()
+		{
+			return current().createNdefMessage();
+		}
+
+		@Override
+		public ConnectPayload createConnectPayload()
+		{
+			return RemoteAndroidCompat.createConnectPayload(current());
+		}
+
+		/**
+		 * Release this client. The shared manager is closed with the last client.
+		 */
+		@Override
+		public void close()
+		{
+			Droid2DroidManager toClose=null;
+			Droid2DroidManager toCancel=null;
+			Context context=null;
+			synchronized (sLock)
+			{
+				if (mClosed)
+					return;
+				mClosed=true;
+				final boolean wasDiscovering=isDiscoveringLocked(SystemClock.elapsedRealtime());
+				mDiscovering=false;
+				sClients.remove(this);
+				if (sClients.isEmpty() && !sBinding)
+					context=detachLocked();
+				if (sClients.isEmpty() && sReal!=null)
+				{
+					// Close the real manager, even if its service is disconnected
+					toClose=sReal;
+					sReal=null;
+					sManager=null;
+					sDiscoverFlags=0;
+					sDiscoverDeadline=0;
+				}
+				else if (sManager==null)
+				{
+					// Not bound yet, or the service is gone
+				}
+				else if (wasDiscovering)
+				{
+					// The current discovery covers the others clients
+					boolean other=false;
+					final long now=SystemClock.elapsedRealtime();
+					for (Client client:sClients)
+						other|=client.isDiscoveringLocked(now);
+					if (!other)
+					{
+						toCancel=sManager;
+						sDiscoverFlags=0;
+						sDiscoverDeadline=0;
+					}
+				}
+			}
+			if (toCancel!=null)
+				toCancel.cancelDiscover();
+			release(context);
+			if (toClose!=null)
+				toClose.close();
+		}
+	}
+}
@@ -0,0 +1,600 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import android.content.Intent;
+import android.os.Parcel;
+import android.util.Log;
+
+/**
+ * Trace the remote calls across the devices.
+ *
+ * Each phase of a remote call (connect, authentication, serialization, transport,
+ * remote service) is a {@link Span}. The context of the trace is sent with the call,
+ * and the remote Android&#8482; create its spans in the same trace. The spans are
+ * sent to a {@link Collector} in each device.
+ * The tracing is disabled without collector, and the spans cost nothing.
+ * The phases of the binds and the calls are traced by the Droid2Droid service, which
+ * read the context of the caller in {@link #EXTRA_TRACE} (see {@link SpanContext#putExtra(Intent)}).
+ * This class is the API shared by the service and the applications: an application
+ * start its own spans around the calls, and collect the spans of its process.
+ * <pre>
+ * Tracer.setCollector(new Tracer.MemoryCollector(1000));
+ * ...
+ * for (Tracer.Span span:collector.getSpans()) Log.d(TAG, span.toString());
+ * </pre>
+ *
+ * @since 1.1
+ */
+public final class Tracer
+{
+	/** Extra in intent with the context of the trace.
+	 * @since 1.1
+	 */
+	public static final String EXTRA_TRACE="trace";
+
+	/** Phase to open the connection.
+	 * @since 1.1
+	 */
+	public static final String PHASE_CONNECT="connect";
+	/** Phase to authenticate the devices.
+	 * @since 1.1
+	 */
+	public static final String PHASE_AUTH="auth";
+	/** Phase to marshal and unmarshal the parameters.
+	 * @since 1.1
+	 */
+	public static final String PHASE_SERIALIZE="serialize";
+	/** Phase to send and receive the frames.
+	 * @since 1.1
+	 */
+	public static final String PHASE_TRANSPORT="transport";
+	/** Phase to execute the remote service.
+	 * @since 1.1
+	 */
+	public static final String PHASE_SERVICE="service";
+
+	/** The side of the caller.
+	 * @since 1.1
+	 */
+	public static final int SIDE_CALLER=0;
+	/** The side of the remote Android&#8482;.
+	 * @since 1.1
+	 */
+	public static final int SIDE_PEER=1;
+
+	private static final String TAG="Tracer";
+
+	/**
+	 * Receive the finished spans.
+	 *
+	 * @since 1.1
+	 */
+	public interface Collector
+	{
+		/**
+		 * A span is finished.
+		 *
+		 * @param span The span.
+		 * @since 1.1
+		 */
+		void onSpan(Span span);
+	}
+
+	/**
+	 * The identity of a span, sent to the remote Android&#8482;.
+	 *
+	 * @since 1.1
+	 */
+	public static final class SpanContext
+	{
+		/** The size of the context in bytes. */
+		public static final int SIZE=16;
+
+		private final long mTraceId;
+		private final long mSpanId;
+
+		/*package*/ SpanContext(long traceId,long spanId)
+		{
+			mTraceId=traceId;
+			mSpanId=spanId;
+		}
+
+		/** @since 1.1 */
+		public long getTraceId()
+		{
+			return mTraceId;
+		}
+
+		/** @since 1.1 */
+		public long getSpanId()
+		{
+			return mSpanId;
+		}
+
+		/**
+		 * Write the context in a frame.
+		 *
+		 * @param dest The parcel.
+		 * @since 1.1
+		 */
+		public void writeToParcel(Parcel dest)
+		{
+			dest.writeLong(mTraceId);
+			dest.writeLong(mSpanId);
+		}
+
+		/**
+		 * Read the context from a frame.
+		 *
+		 * @param source The parcel.
+		 * @return The context, or <code>null</code> if the caller don't trace.
+		 * @since 1.1
+		 */
+		public static SpanContext readFromParcel(Parcel source)
+		{
+			final long traceId=source.readLong();
+			final long spanId=source.readLong();
+			return (traceId==0) ? null : new SpanContext(traceId,spanId);
+		}
+
+		/**
+		 * Write an empty context, if the call is not traced.
+		 *
+		 * @param dest The parcel.
+		 * @since 1.1
+		 */
+		public static void writeNone(Parcel dest)
+		{
+			dest.writeLong(0);
+			dest.writeLong(0);
+		}
+
+		/**
+		 * Add the context in an intent.
+		 *
+		 * @param intent The intent.
+		 * @return The intent.
+		 * @since 1.1
+		 */
+		public Intent putExtra(Intent intent)
+		{
+			return intent.putExtra(EXTRA_TRACE,mTraceId+"-"+mSpanId);
+		}
+
+		/**
+		 * Extract the context from an intent.
+		 *
+		 * @param intent The intent.
+		 * @return The context or <code>null</code>.
+		 * @since 1.1
+		 */
+		public static SpanContext fromIntent(Intent intent)
+		{
+			final String value=intent.getStringExtra(EXTRA_TRACE);
+			if (value==null)
+				return null;
+			final int sep=value.indexOf('-',1);
+			try
+			{
+				return new SpanContext(Long.parseLong(value.substring(0,sep)),Long.parseLong(value.substring(sep+1)));
+			}
+			catch (RuntimeException e)
+			{
+				return null;
+			}
+		}
+
+		@Override
+		public String toString()
+		{
+			return Long.toHexString(mTraceId)+"/"+Long.toHexString(mSpanId);
+		}
+	}
+
+	/**
+	 * A timed phase of a remote call.
+	 *
+	 * @since 1.1
+	 */
+	public static final class Span
+	{
+		private final Collector mCollector;
+		private final SpanContext mContext;
+		private final long mParentId;
+		private final String mName;
+		private final int mSide;
+		private final long mStartTime;
+		private final long mStartNanos;
+		private final Span mPrevious;
+		private volatile long mDuration=-1;
+		private String mError;
+
+		Span(Collector collector,SpanContext context,long parentId,String name,int side,Span previous)
+		{
+			mCollector=collector;
+			mContext=context;
+			mParentId=parentId;
+			mName=name;
+			mSide=side;
+			mStartTime=System.currentTimeMillis();
+			mStartNanos=System.nanoTime();
+			mPrevious=previous;
+		}
+
+		/** The context to send to the remote Android&#8482;. <code>null</code> if not traced.
+		 * @since 1.1
+		 */
+		public SpanContext getContext()
+		{
+			return mContext;
+		}
+
+		/** The id of the parent span, or zero.
+		 * @since 1.1
+		 */
+		public long getParentId()
+		{
+			return mParentId;
+		}
+
+		/** The name (ie. {@link Tracer#PHASE_TRANSPORT}).
+		 * @since 1.1
+		 */
+		public String getName()
+		{
+			return mName;
+		}
+
+		/** {@link Tracer#SIDE_CALLER} or {@link Tracer#SIDE_PEER}.
+		 * @since 1.1
+		 */
+		public int getSide()
+		{
+			return mSide;
+		}
+
+		/** The wall clock time of the start, in milliseconds.
+		 * @since 1.1
+		 */
+		public long getStartTime()
+		{
+			return mStartTime;
+		}
+
+		/** The duration in nanoseconds, or -1 if not finished.
+		 * @since 1.1
+		 */
+		public long getDuration()
+		{
+			return mDuration;
+		}
+
+		/** The error, or <code>null</code>.
+		 * @since 1.1
+		 */
+		public String getError()
+		{
+			return mError;
+		}
+
+		/**
+		 * Mark the span in error. Ignored if the trace is not sampled.
+		 *
+		 * @param e The error.
+		 * @since 1.1
+		 */
+		public void setError(Throwable e)
+		{
+			// The span not sampled is shared
+			if (mContext==null)
+				return;
+			mError=e.toString();
+		}
+
+		/**
+		 * Finish the span and send it to the collector.
+		 *
+		 * @since 1.1
+		 */
+		public void end()
+		{
+			if (mContext==null || mDuration>=0)
+				return;
+			mDuration=System.nanoTime()-mStartNanos;
+			// Ended out of order: the current span of the thread is unchanged
+			if (sCurrent.get()==this)
+				sCurrent.set(live(mPrevious));
+			try
+			{
+				mCollector.onSpan(this);
+			}
+			catch (RuntimeException e)
+			{
+				Log.w(TAG,"Collector error",e);
+			}
+		}
+
+		@Override
+		public String toString()
+		{
+			return mContext+" parent="+Long.toHexString(mParentId)+" "
+					+((mSide==SIDE_CALLER) ? "caller " : "peer ")+mName
+					+" start="+mStartTime+" duration="+(mDuration/1000)+"us"
+					+((mError!=null) ? " error="+mError : "");
+		}
+	}
+
+	/**
+	 * Keep the last spans in memory.
+	 *
+	 * @since 1.1
+	 */
+	public static final class MemoryCollector implements Collector
+	{
+		private final Span[] mSpans;
+		private int mNext;
+		private int mSize;
+
+		/**
+		 * @param capacity The maximum number of spans.
+		 * @throws IllegalArgumentException If the capacity is not positive.
+		 * @since 1.1
+		 */
+		public MemoryCollector(int capacity)
+		{
+			if (capacity<=0)
+				throw new IllegalArgumentException("capacity must be positive");
+			mSpans=new Span[capacity];
+		}
+
+		@Override
+		public synchronized void onSpan(Span span)
+		{
+			mSpans[mNext]=span;
+			mNext=(mNext+1) % mSpans.length;
+			if (mSize<mSpans.length)
+				++mSize;
+		}
+
+		/**
+		 * @return The spans, the oldest first.
+		 * @since 1.1
+		 */
+		public synchronized List<Span> getSpans()
+		{
+			final List<Span> spans=new ArrayList<Span>(mSize);
+			for (int i=0;i<mSize;++i)
+				spans.add(mSpans[(mNext-mSize+i+mSpans.length) % mSpans.length]);
+			return spans;
+		}
+
+		/**
+		 * Remove all the spans.
+		 * @since 1.1
+		 */
+		public synchronized void clear()
+		{
+			mSize=0;
+			mNext=0;
+		}
+	}
+
+	/**
+	 * Write the spans in a file, one line for each span.
+	 * The columns are separated with tabs: trace, span, parent, side, name, start (ms), duration (ns), error.
+	 * The backslashes, tabs and line breaks of the name and the error are escaped
+	 * (<code>\\</code>, <code>\t</code>, <code>\n</code>, <code>\r</code>).
+	 *
+	 * @since 1.1
+	 */
+	public static final class FileCollector implements Collector
+	{
+		private final Writer mOut;
+
+		/**
+		 * @param file The file. The spans are appended.
+		 * @throws IOException If the file can not be opened.
+		 * @since 1.1
+		 */
+		public FileCollector(File file) throws IOException
+		{
+			mOut=new BufferedWriter(new FileWriter(file,true));
+		}
+
+		@Override
+		public synchronized void onSpan(Span span)
+		{
+			try
+			{
+				mOut.write(Long.toHexString(span.mContext.mTraceId)+'\t'
+						+Long.toHexString(span.mContext.mSpanId)+'\t'
+						+Long.toHexString(span.mParentId)+'\t'
+						+span.mSide+'\t'
+						+escape(span.mName)+'\t'
+						+span.mStartTime+'\t'
+						+span.mDuration+'\t'
+						+((span.mError!=null) ? escape(span.mError) : "")+'\n');
+			}
+			catch (IOException e)
+			{
+				Log.w(TAG,"Can't write span",e);
+			}
+		}
+
+		private static String escape(String value)
+		{
+			final StringBuilder builder=new StringBuilder(value.length());
+			for (int i=0;i<value.length();++i)
+			{
+				final char c=value.charAt(i);
+				switch (c)
+				{
+					case '\\':
+						builder.append("\\\\");
+						break;
+					case '\t':
+						builder.append("\\t");
+						break;
+					case '\n':
+						builder.append("\\n");
+						break;
+					case '\r':
+						builder.append("\\r");
+						break;
+					default:
+						builder.append(c);
+				}
+			}
+			return builder.toString();
+		}
+
+		/**
+		 * Flush the file.
+		 * @throws IOException If the file can not be written.
+		 * @since 1.1
+		 */
+		public synchronized void flush() throws IOException
+		{
+			mOut.flush();
+		}
+
+		/**
+		 * Close the file.
+		 * @throws IOException If the file can not be written.
+		 * @since 1.1
+		 */
+		public synchronized void close() throws IOException
+		{
+			mOut.close();
+		}
+	}
+
+	private static volatile Collector sCollector;
+	private static final Random sRandom=new Random();
+	private static final ThreadLocal<Span> sCurrent=new ThreadLocal<Span>();
+	private static final Span NONE=new Span(null,null,0,"none",SIDE_CALLER,null);
+
+	private Tracer()
+	{
+	}
+
+	/**
+	 * Set the collector of the spans in this process.
+	 *
+	 * @param collector The collector, or <code>null</code> to disable the tracing.
+	 * @since 1.1
+	 */
+	public static void setCollector(Collector collector)
+	{
+		sCollector=collector;
+	}
+
+	/**
+	 * @return <code>true</code> if a collector is set.
+	 * @since 1.1
+	 */
+	public static boolean isEnabled()
+	{
+		return sCollector!=null;
+	}
+
+	/**
+	 * Start a span on the caller side. The parent is the current span of the thread,
+	 * else a new trace is started. The span become the current span of the thread.
+	 *
+	 * @param name The name.
+	 * @return The span. Invoke {@link Span#end()} in a finally block.
+	 * @since 1.1
+	 */
+	public static Span start(String name)
+	{
+		final Span current=live(sCurrent.get());
+		return start(name,(current!=null) ? current.mContext : null,SIDE_CALLER);
+	}
+
+	/**
+	 * Start a span with a parent, ie. received from the caller.
+	 *
+	 * @param name The name.
+	 * @param parent The parent, or <code>null</code> to start a new trace.
+	 * @param side {@link #SIDE_CALLER} or {@link #SIDE_PEER}.
+	 * @return The span. Invoke {@link Span#end()} in a finally block.
+	 * @since 1.1
+	 */
+	public static Span start(String name,SpanContext parent,int side)
+	{
+		final Collector collector=sCollector;
+		if (collector==null)
+			return NONE;
+		final long spanId=nextId();
+		final SpanContext context=(parent!=null)
+				? new SpanContext(parent.mTraceId,spanId)
+				: new SpanContext(nextId(),spanId);
+		final Span span=new Span(collector,context,(parent!=null) ? parent.mSpanId : 0,name,side,live(sCurrent.get()));
+		sCurrent.set(span);
+		return span;
+	}
+
+	/**
+	 * Return the current span of the thread.
+	 *
+	 * @return The span or <code>null</code>.
+	 * @since 1.1
+	 */
+	public static Span current()
+	{
+		return live(sCurrent.get());
+	}
+
+	// Skip the parents ended before their children
+	private static Span live(Span span)
+	{
+		while (span!=null && span.mDuration>=0)
+			span=span.mPrevious;
+		return span;
+	}
+
+	private static long nextId()
+	{
+		long id;
+		do
+		{
+			synchronized (sRandom)
+			{
+				id=sRandom.nextLong();
+			}
+		} while (id==0);
+		return id;
+	}
+}
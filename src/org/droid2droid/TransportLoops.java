@@ -0,0 +1,697 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.util.Log;
+
+/**
+ * A few selector loops for all the sockets to the remote Androids&#8482;.
+ *
+ * Each loop is a thread with a {@link Selector}, and handle the connections,
+ * the reads and the writes of many sockets without blocking. The received data
+ * are dispatched to an executor, in order for each connection. The reads of a
+ * connection are suspended when too much data are waiting for the handler.
+ * An exception of the handler is logged, and the next events are dispatched.
+ *
+ * @hide
+ */
+public final class TransportLoops implements Closeable
+{
+	/**
+	 * The handler of a connection. Invoked in the executor, never concurrently
+	 * for the same connection.
+	 */
+	public interface Handler
+	{
+		/**
+		 * The connection is established.
+		 *
+		 * @param connection The connection.
+		 */
+		void onConnected(Connection connection);
+
+		/**
+		 * Data are received.
+		 *
+		 * @param connection The connection.
+		 * @param data The data.
+		 */
+		void onData(Connection connection,byte[] data);
+
+		/**
+		 * The connection is closed.
+		 *
+		 * @param connection The connection.
+		 * @param cause The error, or <code>null</code> if closed normally.
+		 */
+		void onClosed(Connection connection,IOException cause);
+	}
+
+	private static final String TAG="TransportLoops";
+
+	/** The maximum number of received buffers waiting for the handler, before suspend the reads. */
+	private static final int MAX_PENDING=32;
+
+	private static final int READ_BUFFER_SIZE=64*1024;
+
+	/** The delay before dispatch again to an executor which rejected a task, in milliseconds. */
+	private static final long RETRY_DELAY=50;
+
+	private final Loop[] mLoops;
+	private final Executor mExecutor;
+	private final AtomicInteger mNext=new AtomicInteger();
+	private volatile boolean mClosed;
+
+	/**
+	 * @param loops The number of loops. Zero for one loop per processor.
+	 * @param executor The executor for the handlers. Must be bounded. When the executor reject
+	 * a task, the reads of the connection are suspended, and the events are dispatched again later.
+	 * @throws IOException If the selectors can not be opened.
+	 */
+	public TransportLoops(int loops,Executor executor) throws IOException
+	{
+		if (loops<=0)
+			loops=Runtime.getRuntime().availableProcessors();
+		mExecutor=executor;
+		mLoops=new Loop[loops];
+		try
+		{
+			for (int i=0;i<loops;++i)
+			{
+				mLoops[i]=new Loop(i);
+				mLoops[i].start();
+			}
+		}
+		catch (IOException e)
+		{
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Register a connected socket.
+	 *
+	 * @param channel The socket.
+	 * @param handler The handler.
+	 * @return The connection.
+	 * @throws IOException If the socket can not be non blocking.
+	 * @throws IllegalStateException If the loops are closed.
+	 */
+	public Connection register(SocketChannel channel,Handler handler) throws IOException
+	{
+		checkOpen();
+		channel.configureBlocking(false);
+		final Connection connection=new Connection(nextLoop(),channel,handler);
+		connection.mLoop.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				connection.register(SelectionKey.OP_READ);
+				connection.dispatchConnected();
+			}
+		});
+		return connection;
+	}
+
+	/**
+	 * Open a connection without blocking.
+	 *
+	 * @param address The remote address.
+	 * @param handler The handler. {@link Handler#onConnected(Connection)} is invoked when the connection is established.
+	 * @return The connection.
+	 * @throws IOException If the socket can not be opened.
+	 * @throws IllegalStateException If the loops are closed.
+	 */
+	public Connection connect(SocketAddress address,Handler handler) throws IOException
+	{
+		checkOpen();
+		final SocketChannel channel=SocketChannel.open();
+		final Connection connection;
+		final boolean connected;
+		try
+		{
+			channel.configureBlocking(false);
+			connection=new Connection(nextLoop(),channel,handler);
+			connected=channel.connect(address);
+		}
+		catch (IOException e)
+		{
+			channel.close();
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			// Unresolved or unsupported address
+			channel.close();
+			throw e;
+		}
+		connection.mLoop.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				connection.register(connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT);
+				if (connected)
+					connection.dispatchConnected();
+			}
+		});
+		return connection;
+	}
+
+	/**
+	 * Stop the loops and close all the connections.
+	 */
+	@Override
+	public void close()
+	{
+		mClosed=true;
+		for (Loop loop:mLoops)
+		{
+			if (loop!=null)
+				loop.shutdown();
+		}
+	}
+
+	private void checkOpen()
+	{
+		if (mClosed)
+			throw new IllegalStateException("Closed");
+	}
+
+	private Loop nextLoop()
+	{
+		return mLoops[(mNext.getAndIncrement() & Integer.MAX_VALUE) % mLoops.length];
+	}
+
+	/**
+	 * A connection with a remote Android&#8482;.
+	 */
+	public final class Connection
+	{
+		private final Loop mLoop;
+		private final SocketChannel mChannel;
+		private final Handler mHandler;
+		private SelectionKey mKey;
+		// Accessed only in the loop
+		private boolean mReadSuspended;
+		private boolean mRejected;
+
+		private final LinkedList<ByteBuffer> mWrites=new LinkedList<ByteBuffer>();
+
+		// The dispatch to the handler, serialized for this connection
+		private final LinkedList<Runnable> mPending=new LinkedList<Runnable>();
+		private int mPendingData;
+		private boolean mRunning;
+		private boolean mClosed;
+
+		private final Runnable mDrain=new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				boolean finished=false;
+				try
+				{
+					for (;;)
+					{
+						final Runnable next;
+						synchronized (Connection.this)
+						{
+							next=mPending.poll();
+							if (next==null)
+							{
+								mRunning=false;
+								finished=true;
+								return;
+							}
+						}
+						try
+						{
+							next.run();
+						}
+						catch (RuntimeException e)
+						{
+							// Keep the next events of the connection
+							Log.w(TAG,"Handler error",e);
+						}
+					}
+				}
+				finally
+				{
+					if (!finished)
+					{
+						// An Error: the next event dispatch again
+						synchronized (Connection.this)
+						{
+							mRunning=false;
+						}
+					}
+				}
+			}
+		};
+
+		Connection(Loop loop,SocketChannel channel,Handler handler)
+		{
+			mLoop=loop;
+			mChannel=channel;
+			mHandler=handler;
+		}
+
+		/**
+		 * @return The socket.
+		 */
+		public SocketChannel getChannel()
+		{
+			return mChannel;
+		}
+
+		/**
+		 * Send data without blocking. The buffer is copied.
+		 *
+		 * @param data The data.
+		 */
+		public void write(ByteBuffer data)
+		{
+			final ByteBuffer copy=ByteBuffer.allocate(data.remaining());
+			copy.put(data).flip();
+			synchronized (mWrites)
+			{
+				mWrites.add(copy);
+			}
+			mLoop.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					flush();
+				}
+			});
+		}
+
+		/**
+		 * Close the connection.
+		 */
+		public void close()
+		{
+			mLoop.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					closeInLoop(null);
+				}
+			});
+		}
+
+		// In the loop
+		void register(int ops)
+		{
+			try
+			{
+				mKey=mChannel.register(mLoop.mSelector,ops,this);
+			}
+			catch (IOException e)
+			{
+				closeInLoop(e);
+			}
+		}
+
+		// In the loop
+		void onSelected() throws IOException
+		{
+			if (mKey.isConnectable())
+			{
+				mChannel.finishConnect();
+				mKey.interestOps(SelectionKey.OP_READ);
+				dispatchConnected();
+			}
+			if (mKey.isValid() && mKey.isReadable())
+				read();
+			if (mKey.isValid() && mKey.isWritable())
+				flush();
+		}
+
+		// In the loop
+		private void read() throws IOException
+		{
+			final ByteBuffer buffer=mLoop.mReadBuffer;
+			buffer.clear();
+			final int n=mChannel.read(buffer);
+			if (n<0)
+			{
+				closeInLoop(null);
+				return;
+			}
+			if (n==0)
+				return;
+			final byte[] data=new byte[n];
+			buffer.flip();
+			buffer.get(data);
+			final boolean suspend;
+			synchronized (this)
+			{
+				suspend=(++mPendingData>=MAX_PENDING);
+			}
+			dispatch(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						mHandler.onData(Connection.this,data);
+					}
+					finally
+					{
+						dataConsumed();
+					}
+				}
+			});
+			if (suspend)
+				suspendReads();
+		}
+
+		// In the loop
+		private void suspendReads()
+		{
+			if (mKey!=null && mKey.isValid())
+			{
+				mReadSuspended=true;
+				mKey.interestOps(mKey.interestOps() & ~SelectionKey.OP_READ);
+			}
+		}
+
+		// In the executor
+		private void dataConsumed()
+		{
+			final boolean resume;
+			synchronized (this)
+			{
+				resume=(--mPendingData==MAX_PENDING/2);
+			}
+			if (resume)
+			{
+				mLoop.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						if (mReadSuspended && !mRejected && mKey!=null && mKey.isValid())
+						{
+							mReadSuspended=false;
+							mKey.interestOps(mKey.interestOps() | SelectionKey.OP_READ);
+						}
+					}
+				});
+			}
+		}
+
+		// In the loop
+		private void flush()
+		{
+			if (mKey==null || !mKey.isValid())
+				return;
+			try
+			{
+				synchronized (mWrites)
+				{
+					while (!mWrites.isEmpty())
+					{
+						final ByteBuffer head=mWrites.getFirst();
+						mChannel.write(head);
+						if (head.hasRemaining())
+							break;
+						mWrites.removeFirst();
+					}
+					if (mWrites.isEmpty())
+						mKey.interestOps(mKey.interestOps() & ~SelectionKey.OP_WRITE);
+					else
+						mKey.interestOps(mKey.interestOps() | SelectionKey.OP_WRITE);
+				}
+			}
+			catch (IOException e)
+			{
+				closeInLoop(e);
+			}
+		}
+
+		// In the loop
+		void closeInLoop(final IOException cause)
+		{
+			synchronized (this)
+			{
+				if (mClosed)
+					return;
+				mClosed=true;
+			}
+			if (mKey!=null)
+				mKey.cancel();
+			try
+			{
+				mChannel.close();
+			}
+			catch (IOException e)
+			{
+				// Ignore
+			}
+			synchronized (mWrites)
+			{
+				mWrites.clear();
+			}
+			dispatch(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					mHandler.onClosed(Connection.this,cause);
+				}
+			});
+		}
+
+		void dispatchConnected()
+		{
+			dispatch(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					mHandler.onConnected(Connection.this);
+				}
+			});
+		}
+
+		// In the loop
+		private void dispatch(Runnable runnable)
+		{
+			synchronized (this)
+			{
+				mPending.add(runnable);
+				if (mRunning)
+					return;
+				mRunning=true;
+			}
+			execute();
+		}
+
+		// In the loop. Dispatch again the pending events, after a rejection.
+		void retry()
+		{
+			synchronized (this)
+			{
+				if (mRunning || mPending.isEmpty())
+					return;
+				mRunning=true;
+			}
+			execute();
+		}
+
+		// In the loop, with mRunning set
+		private void execute()
+		{
+			try
+			{
+				mExecutor.execute(mDrain);
+			}
+			catch (RejectedExecutionException e)
+			{
+				// The executor is full: keep the events, stop reading this connection and retry later
+				synchronized (this)
+				{
+					mRunning=false;
+				}
+				mRejected=true;
+				suspendReads();
+				mLoop.retryLater(this);
+				return;
+			}
+			if (mRejected)
+			{
+				mRejected=false;
+				final boolean resume;
+				synchronized (this)
+				{
+					resume=(mPendingData<MAX_PENDING);
+				}
+				if (resume && mReadSuspended && mKey!=null && mKey.isValid())
+				{
+					mReadSuspended=false;
+					mKey.interestOps(mKey.interestOps() | SelectionKey.OP_READ);
+				}
+			}
+		}
+	}
+
+	private final class Loop extends Thread
+	{
+		final Selector mSelector;
+		final ByteBuffer mReadBuffer=ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+		private final ConcurrentLinkedQueue<Runnable> mTasks=new ConcurrentLinkedQueue<Runnable>();
+		// The connections rejected by the executor. Accessed only in the loop.
+		private LinkedList<Connection> mRetries=new LinkedList<Connection>();
+		private volatile boolean mStopped;
+
+		Loop(int id) throws IOException
+		{
+			super("droid2droid-loop-"+id);
+			setDaemon(true);
+			mSelector=Selector.open();
+		}
+
+		void execute(Runnable task)
+		{
+			mTasks.add(task);
+			if (Thread.currentThread()!=this)
+				mSelector.wakeup();
+		}
+
+		// In the loop
+		void retryLater(Connection connection)
+		{
+			if (!mRetries.contains(connection))
+				mRetries.add(connection);
+		}
+
+		void shutdown()
+		{
+			mStopped=true;
+			mSelector.wakeup();
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				while (!mStopped)
+				{
+					runTasks();
+					if (mRetries.isEmpty())
+						mSelector.select();
+					else
+						mSelector.select(RETRY_DELAY);
+					for (Iterator<SelectionKey> i=mSelector.selectedKeys().iterator();i.hasNext();)
+					{
+						final SelectionKey key=i.next();
+						i.remove();
+						final Connection connection=(Connection)key.attachment();
+						if (!key.isValid())
+							continue;
+						try
+						{
+							connection.onSelected();
+						}
+						catch (IOException e)
+						{
+							connection.closeInLoop(e);
+						}
+						catch (RuntimeException e)
+						{
+							// Close only this connection (cancelled key, ...)
+							final IOException cause=new IOException(e.toString());
+							cause.initCause(e);
+							connection.closeInLoop(cause);
+						}
+					}
+					if (!mRetries.isEmpty())
+					{
+						final LinkedList<Connection> retries=mRetries;
+						mRetries=new LinkedList<Connection>();
+						for (Connection connection:retries)
+							connection.retry();
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				// Selector broken. Close all the connections.
+			}
+			finally
+			{
+				runTasks();
+				for (SelectionKey key:mSelector.keys())
+					((Connection)key.attachment()).closeInLoop(null);
+				try
+				{
+					mSelector.close();
+				}
+				catch (IOException e)
+				{
+					// Ignore
+				}
+			}
+		}
+
+		private void runTasks()
+		{
+			Runnable task;
+			while ((task=mTasks.poll())!=null)
+			{
+				try
+				{
+					task.run();
+				}
+				catch (RuntimeException e)
+				{
+					Log.w(TAG,"Loop task error",e);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+
+import android.content.ComponentName;
+
+/**
+ * The services unbinded by a remote caller, kept alive during a grace period.
+ *
+ * The key is the component and the caller identity, so a service is never
+ * reattached to another device.
+ * The clock is given by the caller (ie. SystemClock.elapsedRealtime()).
+ *
+ * @hide
+ */
+public final class WarmServicePool<V>
+{
+	private static final class Entry<V>
+	{
+		final V mService;
+		final long mDeadline;
+		Entry(V service,long deadline)
+		{
+			mService=service;
+			mDeadline=deadline;
+		}
+	}
+
+	private final int mCapacity;
+	// Insertion order is the expiration order when the grace period is the same.
+	private final LinkedHashMap<String,Entry<V>> mWarm=new LinkedHashMap<String,Entry<V>>();
+	private long mHits;
+	private long mMisses;
+	private long mEvictions;
+
+	/**
+	 * @param capacity The maximum number of warm services.
+	 */
+	public WarmServicePool(int capacity)
+	{
+		mCapacity=capacity;
+	}
+
+	/**
+	 * Reattach a warm service.
+	 *
+	 * @param component The service component.
+	 * @param caller The caller identity.
+	 * @param now The current time.
+	 * @param stop Receive the expired service for this key, to stop now.
+	 * @return The warm service or <code>null</code> if it's necessary to start a new one.
+	 */
+	public synchronized V reattach(ComponentName component,UUID caller,long now,List<V> stop)
+	{
+		final Entry<V> entry=mWarm.remove(key(component,caller));
+		if (entry!=null && entry.mDeadline>now)
+		{
+			++mHits;
+			return entry.mService;
+		}
+		if (entry!=null)
+		{
+			++mEvictions;
+			stop.add(entry.mService);
+		}
+		++mMisses;
+		return null;
+	}
+
+	/**
+	 * Keep an unbinded service warm.
+	 *
+	 * @param component The service component.
+	 * @param caller The caller identity.
+	 * @param service The service.
+	 * @param gracePeriod The grace period in milliseconds.
+	 * @param now The current time.
+	 * @return The services to stop now (the previous one for the same key,
+	 * 		or the oldest if the pool is full, or <code>service</code> if the grace period is zero).
+	 */
+	public synchronized List<V> park(ComponentName component,UUID caller,V service,long gracePeriod,long now)
+	{
+		final List<V> stop=new ArrayList<V>(1);
+		if (gracePeriod<=0 || mCapacity<=0)
+		{
+			stop.add(service);
+			return stop;
+		}
+		final Entry<V> old=mWarm.put(key(component,caller),new Entry<V>(service,now+gracePeriod));
+		if (old!=null)
+		{
+			++mEvictions;
+			stop.add(old.mService);
+		}
+		for (Iterator<Entry<V>> i=mWarm.values().iterator();mWarm.size()>mCapacity && i.hasNext();)
+		{
+			stop.add(i.next().mService);
+			i.remove();
+			++mEvictions;
+		}
+		return stop;
+	}
+
+	/**
+	 * Remove the services with an expired grace period.
+	 *
+	 * @param now The current time.
+	 * @return The services to stop.
+	 */
+	public synchronized List<V> expire(long now)
+	{
+		final List<V> stop=new ArrayList<V>();
+		for (Iterator<Entry<V>> i=mWarm.values().iterator();i.hasNext();)
+		{
+			final Entry<V> entry=i.next();
+			if (entry.mDeadline<=now)
+			{
+				stop.add(entry.mService);
+				i.remove();
+				++mEvictions;
+			}
+		}
+		return stop;
+	}
+
+	/**
+	 * Return the next deadline, to schedule {@link #expire(long)}.
+	 *
+	 * @return The next deadline or {@link Long#MAX_VALUE} if the pool is empty.
+	 */
+	public synchronized long nextDeadline()
+	{
+		long next=Long.MAX_VALUE;
+		for (Entry<V> entry:mWarm.values())
+			next=Math.min(next,entry.mDeadline);
+		return next;
+	}
+
+	/**
+	 * Remove all the services.
+	 *
+	 * @return The services to stop.
+	 */
+	public synchronized List<V> clear()
+	{
+		final List<V> stop=new ArrayList<V>(mWarm.size());
+		for (Entry<V> entry:mWarm.values())
+			stop.add(entry.mService);
+		mWarm.clear();
+		return stop;
+	}
+
+	/**
+	 * Return the statistics.
+	 *
+	 * @return The statistics.
+	 */
+	public synchronized ServiceReuseStats getStats()
+	{
+		return new ServiceReuseStats(mHits,mMisses,mEvictions,mWarm.size());
+	}
+
+	private static String key(ComponentName component,UUID caller)
+	{
+		return component.flattenToShortString()+'#'+caller;
+	}
+}
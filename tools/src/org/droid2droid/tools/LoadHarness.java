@@ -0,0 +1,599 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.droid2droid.CallbackExecutors;
+import org.droid2droid.Droid2DroidManager;
+import org.droid2droid.ListRemoteAndroidInfo;
+import org.droid2droid.ListRemoteAndroidInfo.DiscoverListener;
+import org.droid2droid.RemoteAndroid;
+import org.droid2droid.RemoteAndroid.PublishListener;
+import org.droid2droid.RemoteAndroidCompat;
+import org.droid2droid.RemoteAndroidInfo;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.IBinder;
+
+/**
+ * Drive the public API with a mix of operations, and measure the behavior in long runs.
+ *
+ * Each worker thread pick an operation with the weights, and run it. With a rate,
+ * the calls are scheduled at fixed intervals, and the latency is measured from the
+ * scheduled time, so a slow call is not hidden by the next ones (no coordinated omission).
+ * The reports give the throughput, the p50/p99/p999 latency, the errors, the heap growth
+ * and the number of threads.
+ *
+ * This tool is not in the library. Run it in a test application with the library,
+ * or headless with a {@link SimulatedSwarm} of peers on loopback.
+ * <pre>
+ * LoadHarness harness=new LoadHarness(8, 200);
+ * harness.add("bind", 10, LoadHarness.bindService(context, remote, intent, 0, 5000));
+ * harness.add("push", 1, LoadHarness.pushMe(context, remote, 0, 5000));
+ * harness.add("discover", 1, LoadHarness.discover(context, manager, Droid2DroidManager.FLAG_PROPOSE_PAIRING, 3000));
+ * LoadHarness.Report report=harness.run(60*60*1000L, 60*1000L, reporter);
+ * </pre>
+ */
+public final class LoadHarness
+{
+	/**
+	 * An operation of the mix.
+	 */
+	public interface Operation
+	{
+		/**
+		 * Run the operation, and wait the end.
+		 *
+		 * @throws Exception If the operation fail. Counted as error.
+		 */
+		void run() throws Exception;
+	}
+
+	/**
+	 * Receive the periodic reports.
+	 */
+	public interface Reporter
+	{
+		/**
+		 * A new report. Invoked in the thread of {@link LoadHarness#run(long, long, Reporter)}.
+		 *
+		 * @param report The report, since the start.
+		 */
+		void onReport(Report report);
+	}
+
+	/**
+	 * The latencies of an operation, in a log-linear histogram.
+	 * The precision is about 3%, from one microsecond to hours.
+	 */
+	public static final class Stats
+	{
+		// 2^SUB_BITS exact values, then HALF buckets for each power of 2
+		private static final int SUB_BITS=6;
+		private static final int SUB=1<<SUB_BITS;
+		private static final int HALF=SUB/2;
+
+		private final String mName;
+		private final long[] mBuckets=new long[(64-SUB_BITS+2)*HALF];
+		private long mCount;
+		private long mErrors;
+		private long mMax;
+
+		Stats(String name)
+		{
+			mName=name;
+		}
+
+		Stats(Stats stats)
+		{
+			synchronized (stats)
+			{
+				mName=stats.mName;
+				System.arraycopy(stats.mBuckets,0,mBuckets,0,mBuckets.length);
+				mCount=stats.mCount;
+				mErrors=stats.mErrors;
+				mMax=stats.mMax;
+			}
+		}
+
+		synchronized void record(long micros,boolean error)
+		{
+			if (micros<0)
+				micros=0;
+			++mBuckets[index(micros)];
+			++mCount;
+			if (error)
+				++mErrors;
+			if (micros>mMax)
+				mMax=micros;
+		}
+
+		private static int index(long value)
+		{
+			if (value<SUB)
+				return (int)value;
+			final int shift=63-Long.numberOfLeadingZeros(value)-SUB_BITS+1;
+			return shift*HALF+(int)(value>>>shift);
+		}
+
+		// The highest value in the bucket
+		private static long value(int index)
+		{
+			if (index<SUB)
+				return index;
+			final int shift=index/HALF-1;
+			final long sub=index%HALF+HALF;
+			return ((sub+1)<<shift)-1;
+		}
+
+		/** The name of the operation. */
+		public String getName()
+		{
+			return mName;
+		}
+
+		/** The number of calls, with the errors. */
+		public synchronized long getCount()
+		{
+			return mCount;
+		}
+
+		/** The number of failed calls. */
+		public synchronized long getErrors()
+		{
+			return mErrors;
+		}
+
+		/** The maximum latency in microseconds. */
+		public synchronized long getMax()
+		{
+			return mMax;
+		}
+
+		/**
+		 * Return a percentile of the latency.
+		 *
+		 * @param percentile The percentile, between 0 and 100 (ie. 99.9).
+		 * @return The latency in microseconds, or 0 without call.
+		 */
+		public synchronized long getPercentile(double percentile)
+		{
+			if (mCount==0)
+				return 0;
+			final long rank=Math.max(1,(long)Math.ceil(percentile/100*mCount));
+			long seen=0;
+			for (int i=0;i<mBuckets.length;++i)
+			{
+				seen+=mBuckets[i];
+				if (seen>=rank)
+					return Math.min(value(i),mMax);
+			}
+			return mMax;
+		}
+
+		@Override
+		public String toString()
+		{
+			return mName+": count="+getCount()+" errors="+getErrors()
+				+" p50="+getPercentile(50)+"us p99="+getPercentile(99)
+				+"us p999="+getPercentile(99.9)+"us max="+getMax()+"us";
+		}
+	}
+
+	/**
+	 * A report of the run, since the start.
+	 */
+	public static final class Report
+	{
+		private final long mElapsed;
+		private final List<Stats> mStats;
+		private final long mHeapGrowth;
+		private final int mThreads;
+
+		Report(long elapsed,List<Stats> stats,long heapGrowth,int threads)
+		{
+			mElapsed=elapsed;
+			mStats=stats;
+			mHeapGrowth=heapGrowth;
+			mThreads=threads;
+		}
+
+		/** The time since the start, in milliseconds. */
+		public long getElapsed()
+		{
+			return mElapsed;
+		}
+
+		/** The statistics of each operation. */
+		public List<Stats> getStats()
+		{
+			return mStats;
+		}
+
+		/** The number of calls per second, for all the operations. */
+		public double getThroughput()
+		{
+			long count=0;
+			for (Stats stats:mStats)
+				count+=stats.getCount();
+			return (mElapsed==0) ? 0 : count*1000.0/mElapsed;
+		}
+
+		/** The used heap, minus the used heap at the start, in bytes. */
+		public long getHeapGrowth()
+		{
+			return mHeapGrowth;
+		}
+
+		/** The number of live threads in the process (an estimate, from the root thread group). */
+		public int getThreads()
+		{
+			return mThreads;
+		}
+
+		@Override
+		public String toString()
+		{
+			final StringBuilder builder=new StringBuilder();
+			builder.append("elapsed=").append(mElapsed).append("ms throughput=")
+				.append((long)getThroughput()).append("/s heap+=").append(mHeapGrowth/1024)
+				.append("KB threads=").append(mThreads);
+			for (Stats stats:mStats)
+				builder.append("\n  ").append(stats);
+			return builder.toString();
+		}
+	}
+
+	private final int mThreads;
+	private final long mPeriodNanos;
+	private final List<String> mNames=new ArrayList<String>();
+	private final List<Operation> mOperations=new ArrayList<Operation>();
+	private final List<Integer> mWeights=new ArrayList<Integer>();
+	private int mTotalWeight;
+
+	/**
+	 * @param threads The number of concurrent calls.
+	 * @param rate The number of calls per second for all the threads,
+	 * or zero to call as fast as possible.
+	 */
+	public LoadHarness(int threads,int rate)
+	{
+		if (threads<=0)
+			throw new IllegalArgumentException("threads must be positive");
+		mThreads=threads;
+		mPeriodNanos=(rate>0) ? 1000000000L/rate : 0;
+	}
+
+	/**
+	 * Add an operation to the mix.
+	 *
+	 * @param name The name in the reports.
+	 * @param weight The relative frequency of the operation.
+	 * @param operation The operation.
+	 */
+	public synchronized void add(String name,int weight,Operation operation)
+	{
+		if (weight<=0)
+			throw new IllegalArgumentException("weight must be positive");
+		mNames.add(name);
+		mOperations.add(operation);
+		mWeights.add(weight);
+		mTotalWeight+=weight;
+	}
+
+	/**
+	 * Run the mix, and wait the end.
+	 *
+	 * @param duration The duration of the run, in milliseconds.
+	 * @param interval The interval between the reports, in milliseconds. Zero for only the last report.
+	 * @param reporter The reporter of the intermediate reports. May be <code>null</code>.
+	 * @return The final report.
+	 * @throws InterruptedException If the current thread is interrupted.
+	 */
+	public Report run(long duration,long interval,Reporter reporter) throws InterruptedException
+	{
+		final String[] names;
+		final Operation[] operations;
+		final int[] weights;
+		final int total;
+		synchronized (this)
+		{
+			if (mOperations.isEmpty())
+				throw new IllegalStateException("No operation");
+			names=mNames.toArray(new String[mNames.size()]);
+			operations=mOperations.toArray(new Operation[mOperations.size()]);
+			weights=new int[mWeights.size()];
+			for (int i=0;i<weights.length;++i)
+				weights[i]=mWeights.get(i);
+			total=mTotalWeight;
+		}
+		final Stats[] stats=new Stats[names.length];
+		for (int i=0;i<names.length;++i)
+			stats[i]=new Stats(names[i]);
+
+		final Runtime runtime=Runtime.getRuntime();
+		System.gc();
+		final long heapStart=runtime.totalMemory()-runtime.freeMemory();
+		final long start=System.nanoTime();
+		final long end=start+TimeUnit.MILLISECONDS.toNanos(duration);
+		final AtomicLong ticket=new AtomicLong();
+
+		final Thread[] workers=new Thread[mThreads];
+		for (int t=0;t<workers.length;++t)
+		{
+			final Random random=new Random(t);
+			workers[t]=new Thread("LoadHarness-"+t)
+			{
+				@Override
+				public void run()
+				{
+					while (!isInterrupted())
+					{
+						long scheduled=System.nanoTime();
+						if (mPeriodNanos!=0)
+						{
+							scheduled=start+ticket.getAndIncrement()*mPeriodNanos;
+							final long wait=scheduled-System.nanoTime();
+							if (wait>0)
+							{
+								try
+								{
+									TimeUnit.NANOSECONDS.sleep(wait);
+								}
+								catch (InterruptedException e)
+								{
+									return;
+								}
+							}
+						}
+						if (scheduled>=end)
+							return;
+						int pick=random.nextInt(total);
+						int i=0;
+						while (pick>=weights[i])
+							pick-=weights[i++];
+						boolean error=false;
+						try
+						{
+							operations[i].run();
+						}
+						catch (InterruptedException e)
+						{
+							return;
+						}
+						catch (Exception e)
+						{
+							error=true;
+						}
+						stats[i].record((System.nanoTime()-scheduled)/1000,error);
+					}
+				}
+			};
+			workers[t].start();
+		}
+
+		try
+		{
+			final long step=(interval>0) ? TimeUnit.MILLISECONDS.toNanos(interval) : Long.MAX_VALUE;
+			for (;;)
+			{
+				final long now=System.nanoTime();
+				if (now>=end)
+					break;
+				TimeUnit.NANOSECONDS.sleep(Math.min(step,end-now));
+				if (reporter!=null && System.nanoTime()<end)
+					reporter.onReport(report(start,stats,heapStart));
+			}
+		}
+		finally
+		{
+			for (Thread worker:workers)
+				worker.interrupt();
+			for (Thread worker:workers)
+				worker.join();
+		}
+		final Report report=report(start,stats,heapStart);
+		if (reporter!=null)
+			reporter.onReport(report);
+		return report;
+	}
+
+	private static Report report(long start,Stats[] stats,long heapStart)
+	{
+		final Runtime runtime=Runtime.getRuntime();
+		final List<Stats> copy=new ArrayList<Stats>(stats.length);
+		for (Stats s:stats)
+			copy.add(new Stats(s));
+		return new Report(TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-start),copy,
+			runtime.totalMemory()-runtime.freeMemory()-heapStart,countThreads());
+	}
+
+	// Thread.activeCount() count only the current group: count from the root group
+	private static int countThreads()
+	{
+		ThreadGroup root=Thread.currentThread().getThreadGroup();
+		while (root.getParent()!=null)
+			root=root.getParent();
+		return root.activeCount();
+	}
+
+	/**
+	 * An operation to bind a remote service, wait the connection, and unbind.
+	 * Each call is a new connection, to measure the churn of the sessions.
+	 *
+	 * @param context The context.
+	 * @param remote The remote Android&#8482;.
+	 * @param intent The intent of the remote service.
+	 * @param flags The flags of {@link RemoteAndroid#bindService(Intent, ServiceConnection, int)}.
+	 * @param timeout The timeout of the connection, in milliseconds.
+	 * @return The operation.
+	 */
+	public static Operation bindService(final Context context,final RemoteAndroid remote,final Intent intent,final int flags,final long timeout)
+	{
+		return new Operation()
+		{
+			@Override
+			public void run() throws Exception
+			{
+				final CountDownLatch connected=new CountDownLatch(1);
+				final ServiceConnection conn=new ServiceConnection()
+				{
+					@Override
+					public void onServiceConnected(ComponentName name, IBinder service)
+					{
+						connected.countDown();
+					}
+
+					@Override
+					public void onServiceDisconnected(ComponentName name)
+					{
+					}
+				};
+				if (!remote.bindService(intent,conn,flags))
+					throw new IllegalStateException("Service not found");
+				try
+				{
+					if (!connected.await(timeout,TimeUnit.MILLISECONDS))
+						throw new TimeoutException("bindService");
+				}
+				finally
+				{
+					remote.unbindService(conn);
+				}
+			}
+		};
+	}
+
+	/**
+	 * An operation to push the current application, and wait the end.
+	 * The installation is refused, to measure only the protocol.
+	 *
+	 * @param context The context.
+	 * @param remote The remote Android&#8482;.
+	 * @param flags The flags of {@link RemoteAndroid#pushMe(Context, PublishListener, int, long)}.
+	 * @param timeout The timeout in milliseconds.
+	 * @return The operation.
+	 */
+	public static Operation pushMe(final Context context,final RemoteAndroid remote,final int flags,final long timeout)
+	{
+		return new Operation()
+		{
+			@Override
+			public void run() throws Exception
+			{
+				final CountDownLatch finished=new CountDownLatch(1);
+				final Throwable[] error=new Throwable[1];
+				RemoteAndroidCompat.pushMe(remote,context,new PublishListener()
+				{
+					@Override
+					public boolean askIsPushApk()
+					{
+						return false;
+					}
+
+					@Override
+					public void onProgress(int progress)
+					{
+					}
+
+					@Override
+					public void onError(Throwable e)
+					{
+						error[0]=e;
+						finished.countDown();
+					}
+
+					@Override
+					public void onFinish(int status)
+					{
+						finished.countDown();
+					}
+				},flags,timeout,CallbackExecutors.DIRECT);
+				if (!finished.await(timeout,TimeUnit.MILLISECONDS))
+					throw new TimeoutException("pushMe");
+				if (error[0]!=null)
+					throw new IllegalStateException(error[0]);
+			}
+		};
+	}
+
+	/**
+	 * An operation to start a discovery, and wait the end.
+	 *
+	 * @param context The context.
+	 * @param manager The manager.
+	 * @param flags The flags of {@link Droid2DroidManager#startDiscover(int, long)}.
+	 * @param timeout The duration of the discovery, in milliseconds.
+	 * @return The operation.
+	 */
+	public static Operation discover(final Context context,final Droid2DroidManager manager,final int flags,final long timeout)
+	{
+		return new Operation()
+		{
+			@Override
+			public void run() throws Exception
+			{
+				final CountDownLatch stopped=new CountDownLatch(1);
+				final ListRemoteAndroidInfo list=Droid2DroidManager.newDiscoveredAndroid(context,new DiscoverListener()
+				{
+					@Override
+					public void onDiscoverStart()
+					{
+					}
+
+					@Override
+					public void onDiscoverStop()
+					{
+						stopped.countDown();
+					}
+
+					@Override
+					public void onDiscover(RemoteAndroidInfo remoteAndroidInfo, boolean update)
+					{
+					}
+				},CallbackExecutors.DIRECT);
+				try
+				{
+					manager.startDiscover(flags,timeout);
+					if (!stopped.await(timeout*2,TimeUnit.MILLISECONDS))
+						throw new TimeoutException("discover");
+				}
+				finally
+				{
+					list.close();
+				}
+			}
+		};
+	}
+}
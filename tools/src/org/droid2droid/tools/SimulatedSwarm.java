@@ -0,0 +1,530 @@
+/******************************************************************************
+ *
+ * droid2droid - Distributed Android Framework
+ * ==========================================
+ *
+ * Copyright (C) 2026 by the droid2droid contributors
+ * http://www.droid2droid.org
+ *
+ ******************************************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+******************************************************************************/
+package org.droid2droid.tools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.droid2droid.AnnouncementFilter;
+import org.droid2droid.BeaconCodec;
+import org.droid2droid.ConnectPayload;
+import org.droid2droid.RemoteAndroidInfo;
+import org.droid2droid.TransportLoops;
+import org.droid2droid.TransportLoops.Connection;
+
+/**
+ * A swarm of simulated peers on loopback, to drive the transport and the discovery
+ * of the library at scale, without devices.
+ *
+ * Each peer listen on a loopback port and echo the calls. The churn stop some peers,
+ * and start them again on a new port, with a new beacon. The calls use the selector
+ * loops of the library ({@link TransportLoops}), with a pool of connections for each peer.
+ * The beacons are filtered and decoded with {@link AnnouncementFilter} and {@link BeaconCodec}.
+ *
+ * The swarm is a substitute for the devices and the Droid2Droid service: it drives only the
+ * transport and the discovery classes of the library. The public API (discovery with
+ * <code>newDiscoveredAndroid()</code>, <code>bindService()</code>, <code>pushMe()</code>) needs
+ * the service, so measure it with {@link LoadHarness} in a test application.
+ *
+ * The tools are not in the library, nor in the Eclipse project. Build the library
+ * (<code>bin/classes</code>), then from the root of the project:
+ * <pre>
+ * javac -cp bin/classes:$ANDROID_HOME/platforms/android-15/android.jar -d bin/tools $(find tools/src -name '*.java')
+ * java -cp bin/tools:bin/classes:$ANDROID_HOME/platforms/android-15/android.jar org.droid2droid.tools.SimulatedSwarm 2000 16 5000 3600 10 0.05
+ * </pre>
+ * The arguments are the number of peers, the threads, the calls per second, the duration
+ * in seconds, the churn interval in seconds and the fraction of peers restarted at each churn.
+ * The android.jar of the SDK only contains stubs: to see the errors logged by {@link TransportLoops},
+ * replace it with an implementation for the JVM (ie. the android-all jar of Robolectric).
+ */
+public final class SimulatedSwarm implements Closeable
+{
+	private static final long VERSION=1;
+	private static final long FEATURES=RemoteAndroidInfo.FEATURE_WIFI|RemoteAndroidInfo.FEATURE_SCREEN;
+
+	// A simulated peer
+	private final class Peer
+	{
+		final UUID mUuid=UUID.randomUUID();
+		final byte[] mFingerprint=new byte[ConnectPayload.FINGERPRINT_SIZE];
+		final ConcurrentLinkedQueue<Client> mIdle=new ConcurrentLinkedQueue<Client>();
+		final List<SocketChannel> mAccepted=new ArrayList<SocketChannel>();
+		volatile ServerSocketChannel mServer;
+		volatile InetSocketAddress mAddress;
+		volatile byte[] mBeacon;
+
+		Peer(Random random)
+		{
+			random.nextBytes(mFingerprint);
+		}
+
+		void start() throws IOException
+		{
+			final ServerSocketChannel server=ServerSocketChannel.open();
+			server.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"),0));
+			server.configureBlocking(false);
+			mAddress=(InetSocketAddress)server.socket().getLocalSocketAddress();
+			mBeacon=BeaconCodec.encode(mUuid,(int)VERSION,"android","peer-"+mUuid.toString().substring(0,8),FEATURES,mFingerprint,
+				new String[] { "ip://127.0.0.1:"+mAddress.getPort(), "ips://127.0.0.1:"+mAddress.getPort() });
+			mServer=server;
+			mAcceptor.register(this);
+		}
+
+		// Close the server and the connections, like a device out of range
+		void stop()
+		{
+			final ServerSocketChannel server=mServer;
+			mServer=null;
+			closeQuietly(server);
+			synchronized (mAccepted)
+			{
+				for (SocketChannel channel:mAccepted)
+					closeQuietly(channel);
+				mAccepted.clear();
+			}
+			Client client;
+			while ((client=mIdle.poll())!=null)
+				client.mConnection.close();
+		}
+	}
+
+	// A client connection to a peer, with the state of the current call
+	private static final class Client implements TransportLoops.Handler
+	{
+		final CountDownLatch mConnected=new CountDownLatch(1);
+		volatile Connection mConnection;
+		volatile CountDownLatch mDone;
+		volatile int mExpected;
+		volatile boolean mClosed;
+
+		@Override
+		public void onConnected(Connection connection)
+		{
+			mConnected.countDown();
+		}
+
+		@Override
+		public void onData(Connection connection,byte[] data)
+		{
+			final CountDownLatch done=mDone;
+			if (done!=null && (mExpected-=data.length)<=0)
+				done.countDown();
+		}
+
+		@Override
+		public void onClosed(Connection connection,IOException cause)
+		{
+			mClosed=true;
+			mConnected.countDown();
+			final CountDownLatch done=mDone;
+			if (done!=null)
+				done.countDown();
+		}
+	}
+
+	// Accept the connections of all the peers, in one thread
+	private final class Acceptor extends Thread
+	{
+		private final Selector mSelector;
+		private final ConcurrentLinkedQueue<Peer> mRegister=new ConcurrentLinkedQueue<Peer>();
+		private volatile boolean mStopped;
+
+		Acceptor() throws IOException
+		{
+			super("swarm-acceptor");
+			setDaemon(true);
+			mSelector=Selector.open();
+		}
+
+		void register(Peer peer)
+		{
+			mRegister.add(peer);
+			mSelector.wakeup();
+		}
+
+		void shutdown()
+		{
+			mStopped=true;
+			mSelector.wakeup();
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				while (!mStopped)
+				{
+					Peer peer;
+					while ((peer=mRegister.poll())!=null)
+					{
+						final ServerSocketChannel server=peer.mServer;
+						if (server!=null && server.isOpen())
+							server.register(mSelector,SelectionKey.OP_ACCEPT,peer);
+					}
+					mSelector.select();
+					for (Iterator<SelectionKey> i=mSelector.selectedKeys().iterator();i.hasNext();)
+					{
+						final SelectionKey key=i.next();
+						i.remove();
+						if (!key.isValid())
+							continue;
+						accept((Peer)key.attachment(),(ServerSocketChannel)key.channel());
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				// Selector broken
+			}
+			finally
+			{
+				closeQuietly(mSelector);
+			}
+		}
+
+		private void accept(Peer peer,ServerSocketChannel server)
+		{
+			try
+			{
+				final SocketChannel channel=server.accept();
+				if (channel==null)
+					return;
+				synchronized (peer.mAccepted)
+				{
+					if (peer.mServer!=server)
+					{
+						closeQuietly(channel);
+						return;
+					}
+					peer.mAccepted.add(channel);
+				}
+				mServerLoops.register(channel,ECHO);
+			}
+			catch (IOException e)
+			{
+				// The peer is stopped
+			}
+		}
+	}
+
+	// The simulated service: echo the calls
+	private static final TransportLoops.Handler ECHO=new TransportLoops.Handler()
+	{
+		@Override
+		public void onConnected(Connection connection)
+		{
+		}
+
+		@Override
+		public void onData(Connection connection,byte[] data)
+		{
+			connection.write(ByteBuffer.wrap(data));
+		}
+
+		@Override
+		public void onClosed(Connection connection,IOException cause)
+		{
+		}
+	};
+
+	private final Peer[] mPeers;
+	private final ExecutorService mExecutor;
+	private final TransportLoops mServerLoops;
+	private final TransportLoops mClientLoops;
+	private final Acceptor mAcceptor;
+	private final AnnouncementFilter mFilter;
+	private final AtomicLong mRestarts=new AtomicLong();
+	private final AtomicLong mChurnErrors=new AtomicLong();
+	private Thread mChurn;
+
+	/**
+	 * Start the peers.
+	 *
+	 * @param peers The number of peers.
+	 * @param loops The number of selector loops, for each side.
+	 * @throws IOException If the sockets can not be opened.
+	 */
+	public SimulatedSwarm(int peers,int loops) throws IOException
+	{
+		mExecutor=Executors.newFixedThreadPool(Math.max(2,loops*2));
+		mServerLoops=new TransportLoops(loops,mExecutor);
+		mClientLoops=new TransportLoops(loops,mExecutor);
+		mAcceptor=new Acceptor();
+		mAcceptor.start();
+		mFilter=new AnnouncementFilter(peers);
+		final Random random=new Random();
+		mPeers=new Peer[peers];
+		for (int i=0;i<peers;++i)
+		{
+			mPeers[i]=new Peer(random);
+			mPeers[i].start();
+		}
+	}
+
+	/**
+	 * Restart some peers: they leave the network, and come back on a new port.
+	 *
+	 * @param fraction The fraction of the peers, between 0 and 1.
+	 * @throws IOException If the sockets can not be opened.
+	 */
+	public void churn(double fraction) throws IOException
+	{
+		final Random random=new Random();
+		final int count=(int)Math.round(mPeers.length*fraction);
+		for (int i=0;i<count;++i)
+		{
+			final Peer peer=mPeers[random.nextInt(mPeers.length)];
+			synchronized (peer)
+			{
+				peer.stop();
+				peer.start();
+			}
+			mRestarts.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Restart some peers periodically, in a background thread.
+	 *
+	 * @param interval The interval in milliseconds.
+	 * @param fraction The fraction of the peers restarted each time.
+	 */
+	public synchronized void startChurn(final long interval,final double fraction)
+	{
+		mChurn=new Thread("swarm-churn")
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					while (!isInterrupted())
+					{
+						Thread.sleep(interval);
+						try
+						{
+							churn(fraction);
+						}
+						catch (IOException e)
+						{
+							// Counted in the reports, and try again at the next churn
+							mChurnErrors.incrementAndGet();
+							System.err.println("churn: "+e);
+						}
+					}
+				}
+				catch (InterruptedException e)
+				{
+					// Stop
+				}
+			}
+		};
+		mChurn.setDaemon(true);
+		mChurn.start();
+	}
+
+	/**
+	 * @return The number of peers restarted since the start.
+	 */
+	public long getRestarts()
+	{
+		return mRestarts.get();
+	}
+
+	/**
+	 * @return The number of churns interrupted by an error.
+	 */
+	public long getChurnErrors()
+	{
+		return mChurnErrors.get();
+	}
+
+	/**
+	 * An operation to call a random peer, and wait the answer.
+	 * A call to a peer restarted during the call fail.
+	 *
+	 * @param size The size of the call in bytes.
+	 * @param timeout The timeout in milliseconds.
+	 * @return The operation.
+	 */
+	public LoadHarness.Operation call(final int size,final long timeout)
+	{
+		return new LoadHarness.Operation()
+		{
+			private final byte[] mPayload=new byte[size];
+
+			@Override
+			public void run() throws Exception
+			{
+				final Peer peer=mPeers[(int)(Math.random()*mPeers.length)];
+				final Client client=take(peer,timeout);
+				final CountDownLatch done=new CountDownLatch(1);
+				client.mExpected=size;
+				client.mDone=done;
+				client.mConnection.write(ByteBuffer.wrap(mPayload));
+				final boolean answered=done.await(timeout,TimeUnit.MILLISECONDS);
+				client.mDone=null;
+				if (!answered || client.mClosed)
+				{
+					client.mConnection.close();
+					throw answered ? new IOException("Closed") : new TimeoutException("call");
+				}
+				peer.mIdle.add(client);
+			}
+		};
+	}
+
+	/**
+	 * An operation to receive the beacon of a random peer, like the discovery process.
+	 * The unchanged beacons are rejected by the filter, the new ones are decoded.
+	 *
+	 * @return The operation.
+	 */
+	public LoadHarness.Operation discover()
+	{
+		return new LoadHarness.Operation()
+		{
+			@Override
+			public void run()
+			{
+				final byte[] beacon=mPeers[(int)(Math.random()*mPeers.length)].mBeacon;
+				final boolean accepted;
+				synchronized (mFilter)
+				{
+					accepted=BeaconCodec.accept(mFilter,beacon,0,beacon.length);
+				}
+				if (accepted)
+					BeaconCodec.decode(beacon,0,beacon.length);
+			}
+		};
+	}
+
+	private Client take(Peer peer,long timeout) throws Exception
+	{
+		Client client;
+		while ((client=peer.mIdle.poll())!=null)
+		{
+			if (!client.mClosed)
+				return client;
+		}
+		client=new Client();
+		client.mConnection=mClientLoops.connect(peer.mAddress,client);
+		if (!client.mConnected.await(timeout,TimeUnit.MILLISECONDS))
+		{
+			client.mConnection.close();
+			throw new TimeoutException("connect");
+		}
+		if (client.mClosed)
+			throw new IOException("Connection refused");
+		return client;
+	}
+
+	/**
+	 * Stop the peers and the loops.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		if (mChurn!=null)
+			mChurn.interrupt();
+		for (Peer peer:mPeers)
+			peer.stop();
+		mAcceptor.shutdown();
+		mClientLoops.close();
+		mServerLoops.close();
+		mExecutor.shutdown();
+	}
+
+	private static void closeQuietly(Closeable closeable)
+	{
+		if (closeable==null)
+			return;
+		try
+		{
+			closeable.close();
+		}
+		catch (IOException e)
+		{
+			// Ignore
+		}
+	}
+
+	/**
+	 * Run a soak test of the swarm, and print the reports.
+	 *
+	 * @param args peers threads rate seconds churnSeconds churnFraction
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		final int peers=(args.length>0) ? Integer.parseInt(args[0]) : 1000;
+		final int threads=(args.length>1) ? Integer.parseInt(args[1]) : 16;
+		final int rate=(args.length>2) ? Integer.parseInt(args[2]) : 2000;
+		final long seconds=(args.length>3) ? Long.parseLong(args[3]) : 60;
+		final long churn=(args.length>4) ? Long.parseLong(args[4]) : 10;
+		final double fraction=(args.length>5) ? Double.parseDouble(args[5]) : 0.05;
+
+		final SimulatedSwarm swarm=new SimulatedSwarm(peers,2);
+		try
+		{
+			if (churn>0)
+				swarm.startChurn(churn*1000,fraction);
+			final LoadHarness harness=new LoadHarness(threads,rate);
+			harness.add("call",8,swarm.call(256,5000));
+			harness.add("call-64k",1,swarm.call(64*1024,5000));
+			harness.add("discover",4,swarm.discover());
+			harness.run(seconds*1000,Math.min(seconds,10)*1000,new LoadHarness.Reporter()
+			{
+				@Override
+				public void onReport(LoadHarness.Report report)
+				{
+					System.out.println(report+"\n  restarts="+swarm.getRestarts()+" churnErrors="+swarm.getChurnErrors());
+				}
+			});
+		}
+		finally
+		{
+			swarm.close();
+		}
+	}
+}